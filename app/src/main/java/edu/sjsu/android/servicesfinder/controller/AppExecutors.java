@@ -0,0 +1,74 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * APPEXECUTORS
+ * Shared background threads so work is not run on ad-hoc new Thread()s.
+ * - diskIO: single thread for Room reads/writes (keeps local writes ordered)
+ * - imageIO: small fixed pool for decoding/compressing photos before upload; the pool size
+ *   bounds how many full decode buffers can exist at once (see StorageHelper)
+ * - computation: pool sized to the CPU for pure in-memory work (list diffing)
+ * - mainThread: posts results back to the UI
+ * - newSerialExecutor(): a private single background thread for components whose
+ *   tasks must run one at a time and in order (e.g. the in-memory search engine)
+ * Async wraps these in cancellable Tasks; prefer it when the result goes back to the UI.
+ */
+public final class AppExecutors {
+
+    private static final ExecutorService DISK_IO = newSerialExecutor("sf-disk-io");
+
+    private static final int IMAGE_IO_THREADS = 2;
+    private static final ExecutorService IMAGE_IO = Executors.newFixedThreadPool(IMAGE_IO_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "sf-image-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int COMPUTATION_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private static final ExecutorService COMPUTATION = Executors.newFixedThreadPool(COMPUTATION_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "sf-computation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Executor MAIN_THREAD = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
+
+    private AppExecutors() {}
+
+    public static Executor diskIO() {
+        return DISK_IO;
+    }
+
+    public static Executor imageIO() {
+        return IMAGE_IO;
+    }
+
+    public static Executor computation() {
+        return COMPUTATION;
+    }
+
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+
+    public static ExecutorService newSerialExecutor(String threadName) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
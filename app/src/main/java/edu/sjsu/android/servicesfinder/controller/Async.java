@@ -0,0 +1,93 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.SuccessContinuation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * ASYNC
+ * Helpers over Play services Tasks, the future type Firestore and Storage already return,
+ * so background work composes the same way as database calls.
+ * - cpu() / io(): run work on AppExecutors.computation() / diskIO(); run() on any executor
+ * - map(): transform a result on the computation pool; then(): chain the next Task
+ * - allOf(): all results, in order, once every Task has succeeded
+ * - deliver(): hand the outcome to callbacks on the main thread
+ * Each step takes a CancellationToken (see CancellationScope). Once it is cancelled, work not
+ * started yet is skipped, the Task ends up cancelled and deliver() calls neither callback.
+ */
+public final class Async {
+
+    // For work nobody cancels
+    public static final CancellationToken NOT_CANCELLABLE = new CancellationTokenSource().getToken();
+
+    private Async() {}
+
+    public static <T> Task<T> cpu(CancellationToken token, Callable<T> work) {
+        return run(AppExecutors.computation(), token, work);
+    }
+
+    public static <T> Task<T> io(CancellationToken token, Callable<T> work) {
+        return run(AppExecutors.diskIO(), token, work);
+    }
+
+    public static <T> Task<T> run(Executor executor, CancellationToken token, Callable<T> work) {
+        TaskCompletionSource<T> result = new TaskCompletionSource<>(token);
+        executor.execute(() -> {
+            if (token.isCancellationRequested()) return;   // result was cancelled with the token
+            try {
+                result.trySetResult(work.call());
+            } catch (Exception e) {
+                result.trySetException(e);
+            }
+        });
+        return result.getTask();
+    }
+
+    // =========================================================
+    // COMBINATORS
+    // =========================================================
+    public static <T, R> Task<R> map(Task<T> task, CancellationToken token, Mapper<T, R> mapper) {
+        return then(task, token, value -> cpu(token, () -> mapper.apply(value)));
+    }
+
+    public static <T, R> Task<R> then(Task<T> task, CancellationToken token, SuccessContinuation<T, R> next) {
+        return task.continueWithTask(previous -> {
+            if (token.isCancellationRequested() || previous.isCanceled()) return Tasks.forCanceled();
+            if (!previous.isSuccessful()) return Tasks.forException(previous.getException());
+            return next.then(previous.getResult());
+        });
+    }
+
+    public static <T> Task<List<T>> allOf(Collection<? extends Task<? extends T>> tasks, CancellationToken token) {
+        return then(Tasks.<T>whenAllSuccess(tasks), token, Tasks::forResult);
+    }
+
+    // =========================================================
+    // DELIVERY (main thread)
+    // =========================================================
+    public static <T> void deliver(Task<T> task, CancellationToken token,
+                                   OnSuccessListener<T> onSuccess, OnFailureListener onFailure) {
+        task.addOnCompleteListener(AppExecutors.mainThread(), done -> {
+            if (token.isCancellationRequested() || done.isCanceled()) return;
+            if (done.isSuccessful()) {
+                onSuccess.onSuccess(done.getResult());
+            } else {
+                onFailure.onFailure(done.getException());
+            }
+        });
+    }
+
+    public interface Mapper<T, R> {
+        R apply(T value) throws Exception;
+    }
+}
@@ -0,0 +1,73 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CANCELLATIONSCOPE
+ * Hands out the cancellation token of "the current request" for one kind of work.
+ * - next() cancels the request started before and returns the token of a new one, so a
+ *   superseded load, search or sort stops early (or at least never delivers)
+ * - cancel() cancels the current request without starting another
+ * - close() cancels for good: tokens handed out afterwards are already cancelled.
+ *   forLifecycle() scopes close when their activity is destroyed; child() scopes close
+ *   with their parent
+ * Tokens are the Play services CancellationTokens that Tasks accept (see Async) and may be
+ * checked from any thread.
+ */
+public final class CancellationScope {
+
+    private final List<CancellationScope> children = new ArrayList<>();
+    private CancellationTokenSource current;
+    private boolean closed = false;
+
+    public static CancellationScope forLifecycle(LifecycleOwner owner) {
+        CancellationScope scope = new CancellationScope();
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) scope.close();
+        });
+        return scope;
+    }
+
+    public synchronized CancellationScope child() {
+        CancellationScope child = new CancellationScope();
+        if (closed) {
+            child.close();
+        } else {
+            children.add(child);
+        }
+        return child;
+    }
+
+    public synchronized CancellationToken next() {
+        if (current != null) current.cancel();
+        current = new CancellationTokenSource();
+        if (closed) current.cancel();
+        return current.getToken();
+    }
+
+    public synchronized void cancel() {
+        if (current != null) current.cancel();
+    }
+
+    public void close() {
+        List<CancellationScope> toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (current != null) current.cancel();
+            toClose = new ArrayList<>(children);
+            children.clear();
+        }
+        for (CancellationScope child : toClose) {
+            child.close();
+        }
+    }
+}
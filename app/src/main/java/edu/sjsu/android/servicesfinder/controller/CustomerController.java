@@ -192,17 +192,6 @@ public class CustomerController {
         customerDatabase.removeFavoriteProvider(customerId, providerId, callback);
     }
 
-    /**
-     * Toggle favorite status
-     */
-    public void toggleFavoriteProvider(String customerId, String providerId, boolean isFavorite, CustomerDatabase.OnCustomerOperationListener callback) {
-        if (isFavorite) {
-            removeFavoriteProvider(customerId, providerId, callback);
-        } else {
-            addFavoriteProvider(customerId, providerId, callback);
-        }
-    }
-
     /* *****************************************************************************************
      * UPDATE CUSTOMER PROFILE
      ******************************************************************************************/
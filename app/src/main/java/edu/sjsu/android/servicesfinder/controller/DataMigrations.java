@@ -0,0 +1,151 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.sjsu.android.servicesfinder.database.FirestoreHelper;
+import edu.sjsu.android.servicesfinder.database.ProviderServiceDatabase;
+import edu.sjsu.android.servicesfinder.database.ReviewDatabase;
+
+/**
+ * DATAMIGRATIONS
+ * Backfills for fields added after data already existed, run once over the whole catalog,
+ * not once per install or per provider.
+ * - the first client to start one claims its marker document (migrations/{name}) in a
+ *   transaction; other installs skip it while the claim is fresh, and take it over once
+ *   CLAIM_LEASE_MS has passed without it finishing (that client died or went offline)
+ * - a run that succeeds marks the document done; a run that fails releases the claim
+ * - an install that has seen a migration done remembers it and stops checking; until then
+ *   runPending() costs one transaction per migration
+ * isDone() tells readers whether they may rely on the backfilled field yet.
+ */
+public final class DataMigrations {
+    private static final String TAG = "DataMigrations";
+    private static final String PREF = "services_finder_migrations";
+    private static final String COLLECTION_MIGRATIONS = "migrations";
+    private static final String FIELD_DONE = "done";
+    private static final String FIELD_CLAIMED_AT = "claimedAt";
+    private static final long CLAIM_LEASE_MS = 30 * 60 * 1000L;
+
+    // categoryKeys on service documents (see ProviderServiceDatabase.getProvidersByCategory)
+    public static final String CATEGORY_KEYS = "category_keys_v1";
+    // ratingSum/ratingCount on provider documents (see ReviewDatabase.getAverageRating)
+    public static final String RATING_AGGREGATES = "rating_aggregates_v1";
+
+    private DataMigrations() {}
+
+    // From the launcher screen; does nothing for migrations already seen done
+    public static void runPending(Context ctx) {
+        Context appContext = ctx.getApplicationContext();
+
+        run(appContext, CATEGORY_KEYS, done ->
+                new ProviderServiceDatabase(appContext).backfillCategoryKeys(
+                        new ProviderServiceDatabase.OnCategoryKeysBackfillListener() {
+                            @Override
+                            public void onBackfillComplete(int servicesUpdated) {
+                                done.onComplete(servicesUpdated);
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                done.onError(error);
+                            }
+                        }));
+
+        run(appContext, RATING_AGGREGATES, done ->
+                new ReviewDatabase().backfillRatingAggregates(new ReviewDatabase.OnRatingBackfillListener() {
+                    @Override
+                    public void onBackfillComplete(int providersUpdated) {
+                        done.onComplete(providersUpdated);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        done.onError(error);
+                    }
+                }));
+    }
+
+    public static boolean isDone(Context ctx, String migration) {
+        return prefs(ctx).getBoolean(migration, false);
+    }
+
+    // =========================================================
+    // CLAIM -> RUN -> MARK DONE
+    // =========================================================
+    private static void run(Context appContext, String migration, Backfill backfill) {
+        if (isDone(appContext, migration)) return;
+
+        FirebaseFirestore db = FirestoreHelper.getInstance();
+        DocumentReference marker = db.collection(COLLECTION_MIGRATIONS).document(migration);
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot doc = transaction.get(marker);
+                    if (Boolean.TRUE.equals(doc.getBoolean(FIELD_DONE))) return Claim.DONE;
+
+                    long now = System.currentTimeMillis();
+                    Long claimedAt = doc.getLong(FIELD_CLAIMED_AT);
+                    if (claimedAt != null && now - claimedAt < CLAIM_LEASE_MS) return Claim.BUSY;
+
+                    Map<String, Object> claim = new HashMap<>();
+                    claim.put(FIELD_CLAIMED_AT, now);
+                    transaction.set(marker, claim, SetOptions.merge());
+                    return Claim.CLAIMED;
+                })
+                .addOnSuccessListener(claim -> {
+                    if (claim == Claim.DONE) {
+                        markDoneLocally(appContext, migration);
+                    } else if (claim == Claim.CLAIMED) {
+                        backfill.run(new OnBackfillDoneListener() {
+                            @Override
+                            public void onComplete(int documentsUpdated) {
+                                Log.i(TAG, migration + ": backfilled " + documentsUpdated + " documents");
+                                Map<String, Object> done = new HashMap<>();
+                                done.put(FIELD_DONE, true);
+                                done.put(FIELD_CLAIMED_AT, FieldValue.delete());
+                                marker.set(done, SetOptions.merge())
+                                        .addOnSuccessListener(unused -> markDoneLocally(appContext, migration))
+                                        .addOnFailureListener(e -> Log.e(TAG, migration + ": marking done failed", e));
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                Log.e(TAG, migration + " failed: " + error);
+                                marker.update(FIELD_CLAIMED_AT, FieldValue.delete());   // next launch retries
+                            }
+                        });
+                    }
+                    // BUSY: another client is running it; checked again on the next launch
+                })
+                .addOnFailureListener(e -> Log.w(TAG, migration + ": claim failed", e));
+    }
+
+    private static void markDoneLocally(Context appContext, String migration) {
+        prefs(appContext).edit().putBoolean(migration, true).apply();
+    }
+
+    private static SharedPreferences prefs(Context ctx) {
+        return ctx.getApplicationContext().getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    }
+
+    private enum Claim { DONE, BUSY, CLAIMED }
+
+    private interface Backfill {
+        void run(OnBackfillDoneListener done);
+    }
+
+    private interface OnBackfillDoneListener {
+        void onComplete(int documentsUpdated);
+        void onError(String error);
+    }
+}
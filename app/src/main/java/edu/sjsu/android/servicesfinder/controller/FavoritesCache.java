@@ -0,0 +1,153 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.content.Context;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.sjsu.android.servicesfinder.database.CustomerDatabase;
+import edu.sjsu.android.servicesfinder.model.Customer;
+
+/**
+ * FAVORITESCACHE
+ * In-memory copy of the signed-in customer's favorite provider IDs.
+ * - toggle() flips the local state first (the heart updates immediately), then sends one
+ *   arrayUnion/arrayRemove write; if that write fails the flip is rolled back
+ * - a failed write only rolls back when no newer tap on the same provider happened since,
+ *   so fast repeated taps settle on the last one
+ * - setFavorites() takes the list read with the customer document; it is ignored while
+ *   writes are pending, since that read may predate them
+ * - a toggle before anything is loaded reads the customer document first, so the tap flips
+ *   the stored state instead of an empty set
+ * All access happens on the main thread (Firestore delivers callbacks there).
+ */
+public final class FavoritesCache {
+
+    private static FavoritesCache INSTANCE;
+
+    private String customerId;                                        // whose favorites are held
+    private final Set<String> favorites = new HashSet<>();
+    private final Map<String, Integer> toggleSequence = new HashMap<>(); // providerId -> latest tap
+    private int pendingWrites = 0;
+
+    private FavoritesCache() {}
+
+    public static FavoritesCache get() {
+        if (INSTANCE == null) {
+            INSTANCE = new FavoritesCache();
+        }
+        return INSTANCE;
+    }
+
+    // =========================================================
+    // READ (synchronous)
+    // =========================================================
+    public boolean isLoadedFor(String customerId) {
+        return customerId != null && customerId.equals(this.customerId);
+    }
+
+    public boolean isFavorite(String providerId) {
+        return favorites.contains(providerId);
+    }
+
+    // =========================================================
+    // LOAD (from the customer document)
+    // =========================================================
+    public void setFavorites(String customerId, Collection<String> providerIds) {
+        if (isLoadedFor(customerId) && pendingWrites > 0) return;
+
+        if (!isLoadedFor(customerId)) {
+            toggleSequence.clear();
+            pendingWrites = 0;
+        }
+        this.customerId = customerId;
+        favorites.clear();
+        if (providerIds != null) {
+            favorites.addAll(providerIds);
+        }
+    }
+
+    // =========================================================
+    // TOGGLE (optimistic, rolled back on failure)
+    // =========================================================
+    public void toggle(Context context, String customerId, String providerId, OnFavoriteToggleListener listener) {
+        if (isLoadedFor(customerId)) {
+            toggleLoaded(context, customerId, providerId, listener);
+            return;
+        }
+
+        // Not loaded yet: an empty set would turn every tap into "add", so read the list first
+        new CustomerDatabase(context).getCustomerById(customerId, new CustomerDatabase.OnCustomerLoadedListener() {
+            @Override
+            public void onSuccess(Customer customer) {
+                setFavorites(customerId, customer.getFavoriteProviders());
+                toggleLoaded(context, customerId, providerId, listener);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                listener.onFavoriteFailed(providerId, errorMessage);
+            }
+        });
+    }
+
+    private void toggleLoaded(Context context, String customerId, String providerId, OnFavoriteToggleListener listener) {
+        final boolean nowFavorite = !favorites.contains(providerId);
+        final int sequence = toggleSequence.containsKey(providerId) ? toggleSequence.get(providerId) + 1 : 1;
+        toggleSequence.put(providerId, sequence);
+        apply(providerId, nowFavorite);
+        pendingWrites++;
+        listener.onFavoriteChanged(providerId, nowFavorite);
+
+        CustomerDatabase.OnCustomerOperationListener writeListener = new CustomerDatabase.OnCustomerOperationListener() {
+            @Override
+            public void onSuccess(String message) {
+                if (!isLoadedFor(customerId)) return;   // customer switched meanwhile
+                pendingWrites--;
+                listener.onFavoriteSaved(providerId, nowFavorite, message);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                if (!isLoadedFor(customerId)) return;
+                pendingWrites--;
+
+                Integer latest = toggleSequence.get(providerId);
+                if (latest != null && latest == sequence) {
+                    apply(providerId, !nowFavorite);
+                    listener.onFavoriteChanged(providerId, !nowFavorite);
+                }
+                listener.onFavoriteFailed(providerId, errorMessage);
+            }
+        };
+
+        CustomerDatabase customerDatabase = new CustomerDatabase(context);
+        if (nowFavorite) {
+            customerDatabase.addFavoriteProvider(customerId, providerId, writeListener);
+        } else {
+            customerDatabase.removeFavoriteProvider(customerId, providerId, writeListener);
+        }
+    }
+
+    private void apply(String providerId, boolean favorite) {
+        if (favorite) {
+            favorites.add(providerId);
+        } else {
+            favorites.remove(providerId);
+        }
+    }
+
+    // =========================================================
+    // CALLBACK INTERFACE
+    // =========================================================
+    public interface OnFavoriteToggleListener {
+        // Local state changed: right away on tap, and again if a failed write is rolled back
+        void onFavoriteChanged(String providerId, boolean isFavorite);
+        // The write for this tap reached Firestore
+        void onFavoriteSaved(String providerId, boolean isFavorite, String message);
+        void onFavoriteFailed(String providerId, String errorMessage);
+    }
+}
@@ -7,6 +7,8 @@ import android.util.Log;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -15,10 +17,11 @@ import java.util.Map;
 import java.util.Set;
 
 import edu.sjsu.android.servicesfinder.R;
+import edu.sjsu.android.servicesfinder.model.ServiceCategory;
 /* Method in this class
 A. For cat/services
     String process:
-    1. parseEnglishCategoryString(String savedCategory): String -> structured map.
+    1. parseEnglishCategoryString(String savedCategory): String -> structured map (via model.ServiceCategory).
         "Cleaning & Maintenance: Deep Cleaning, Air Filter Repair | Electronics & IT: Wi-Fi/network repair, Computer repair | Plumbing | Moving Service: Small furniture moving"
         ->
         {
@@ -33,6 +36,7 @@ A. For cat/services
     - translateServiceNameToLocal(String englishKey): Converts a single service name from English to localized.
     - translateCategoryName(String english) Converts a category from English to localized language (e.g., EN → CN, EN → VN).
     - translateCategory(String categoryField): Translates a single cat/services in EN to localized string.
+    - formatLocalized(ServiceCategory category): Same, from the already-parsed category (ProviderService.getParsedCategory()).
     - translateCatalogueMap(Map<String, List<String>> englishMap): Converts entire catalogue (category + services) EN → localized.
     - getLocalizedCategoryMap(Map<String, Set<String>> englishMap): convert category map from EN → localized.
 
@@ -56,12 +60,11 @@ public class FirestoreStringTranslator {
     private static FirestoreStringTranslator INSTANCE;
     private final Context context;
 
+    // Lookup tables for the current locale, rebuilt only when the locale changes
+    private volatile Dictionary dictionary;
+
     private FirestoreStringTranslator(Context context) {
         this.context = context.getApplicationContext();
-
-        // Log current device locale at startup
-        Resources res = context.getResources();
-        String currentLocale = res.getConfiguration().locale.toString();
     }
 
     public static FirestoreStringTranslator get(Context context) {
@@ -77,101 +80,134 @@ public class FirestoreStringTranslator {
         return localRes;
     }
 
-    // Helper: Get fresh Resources with English locale
+    // Helper: Get Resources pinned to English (only needed while building the dictionary)
     private Resources getEnglishResources() {
         Configuration enConfig = new Configuration(context.getResources().getConfiguration());
         enConfig.setLocale(Locale.ENGLISH);
 
         // Use createConfigurationContext to get isolated Resources
         Context enContext = context.createConfigurationContext(enConfig);
-        Resources enRes = enContext.getResources();
+        return enContext.getResources();
+    }
 
-        // Test by loading a known resource
-        try {
-            String testCat = enRes.getString(R.string.cat_cleaning_maintenance);
-        } catch (Exception e) {
-            Log.e("TRACE_TRANSLATOR", "    [DEBUG] Failed to load test resource!", e);
+    //********************************************************************************************
+    // * Translation dictionary
+    // * All cat_* and svc_* strings are read once per locale into four immutable maps:
+    // *   English → localized and localized → English, for categories and for services.
+    // * Keys are lower-cased so lookups stay case-insensitive like the old resource scan.
+    // * The app switches language via updateConfiguration(), so the locale is checked on
+    // * every lookup and the maps are rebuilt the first time a different one is seen.
+    // *******************************************************************************************
+    private static final class Dictionary {
+        final Locale locale;
+        final Map<String, String> categoryToLocal;
+        final Map<String, String> categoryToEnglish;
+        final Map<String, String> serviceToLocal;
+        final Map<String, String> serviceToEnglish;
+
+        Dictionary(Locale locale,
+                   Map<String, String> categoryToLocal, Map<String, String> categoryToEnglish,
+                   Map<String, String> serviceToLocal, Map<String, String> serviceToEnglish) {
+            this.locale = locale;
+            this.categoryToLocal = Collections.unmodifiableMap(categoryToLocal);
+            this.categoryToEnglish = Collections.unmodifiableMap(categoryToEnglish);
+            this.serviceToLocal = Collections.unmodifiableMap(serviceToLocal);
+            this.serviceToEnglish = Collections.unmodifiableMap(serviceToEnglish);
         }
-
-        return enRes;
     }
 
-    // ----------------------------------------------------------------------
-    // FORWARD TRANSLATION (EN → localized)
-    // ----------------------------------------------------------------------
-
-    public String translateCategory(String categoryField) {
-        if (categoryField == null || categoryField.trim().isEmpty()) return "";
+    private Dictionary dictionary() {
+        Locale current = getLocalResources().getConfiguration().getLocales().get(0);
+        Dictionary dict = dictionary;
+        if (dict != null && dict.locale.equals(current)) return dict;
 
-        if (categoryField.contains(":")) {
-            return translateLegacyFormat(categoryField);
+        synchronized (this) {
+            dict = dictionary;
+            if (dict == null || !dict.locale.equals(current)) {
+                dict = buildDictionary(current);
+                dictionary = dict;
+            }
         }
-        return translateCategoryName(categoryField);
+        return dict;
     }
 
-    private String translateLegacyFormat(String legacy) {
-        String[] parts = legacy.split("\\|");
-        List<String> translatedParts = new ArrayList<>();
+    private Dictionary buildDictionary(Locale locale) {
+        Resources localRes = getLocalResources();
+        Resources enRes = getEnglishResources();
 
-        for (String part : parts) {
-            translatedParts.add(translateLegacyPart(part.trim()));
-        }
-        return String.join(" | ", translatedParts);
-    }
+        Map<String, String> categoryToLocal = new HashMap<>();
+        Map<String, String> categoryToEnglish = new HashMap<>();
+        Map<String, String> serviceToLocal = new HashMap<>();
+        Map<String, String> serviceToEnglish = new HashMap<>();
 
-    private String translateLegacyPart(String part) {
-        if (!part.contains(":")) {
-            return translateCategoryName(part);
-        }
+        for (Field field : R.string.class.getDeclaredFields()) {
+            String resourceName = field.getName();
+            boolean isCategory = resourceName.startsWith("cat_");
+            if (!isCategory && !resourceName.startsWith("svc_")) continue;
 
-        String[] split = part.split(":", 2);
-        String cat = translateCategoryName(split[0].trim());
-        String[] services = split[1].split(",");
+            try {
+                int resId = field.getInt(null);
+                String englishValue = enRes.getString(resId);
+                String localizedValue = localRes.getString(resId);
 
-        List<String> localizedServices = new ArrayList<>();
-        for (String svc : services) {
-            localizedServices.add(translateServiceNameToLocal(svc.trim()));
+                // First match wins, same as the old linear scan
+                if (isCategory) {
+                    categoryToLocal.putIfAbsent(key(englishValue), localizedValue);
+                    categoryToEnglish.putIfAbsent(key(localizedValue), englishValue);
+                } else {
+                    serviceToLocal.putIfAbsent(key(englishValue), localizedValue);
+                    serviceToEnglish.putIfAbsent(key(localizedValue), englishValue);
+                }
+            } catch (Exception e) {
+                Log.e("Translator", "Failed to read string resource " + resourceName, e);
+            }
         }
 
-        return cat + ": " + String.join(", ", localizedServices);
+        return new Dictionary(locale, categoryToLocal, categoryToEnglish, serviceToLocal, serviceToEnglish);
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
     }
 
     // ----------------------------------------------------------------------
-    // CATEGORY TRANSLATION (EN → localized)
+    // FORWARD TRANSLATION (EN → localized)
     // ----------------------------------------------------------------------
-    public String translateCategoryName(String english) {
-        if (english == null || english.trim().isEmpty()) return "";
-        try {
-            Resources localRes = getLocalResources();
-            Resources enRes = getEnglishResources();
-
-            Field[] fields = R.string.class.getDeclaredFields();
-            int matchAttempts = 0;
 
-            for (Field field : fields) {
-                int resId = field.getInt(null);
-
-                String resourceName = localRes.getResourceEntryName(resId);
-                if (!resourceName.startsWith("cat_")) continue;
+    public String translateCategory(String categoryField) {
+        if (categoryField == null || categoryField.trim().isEmpty()) return "";
+        return formatLocalized(ServiceCategory.parse(categoryField));
+    }
 
-                String englishValue = enRes.getString(resId);
+    // Parsed category → "LocalCat: LocalSvc1, LocalSvc2 | LocalCat2"
+    public String formatLocalized(ServiceCategory category) {
+        if (category == null || category.isEmpty()) return "";
 
-                matchAttempts++;
-                if (matchAttempts <= 3) {
-                    Log.e("TRACE_TRANSLATOR", "    ↳ Comparing with resource: \"" + englishValue + "\" [" + resourceName + "]");
-                }
+        List<String> parts = new ArrayList<>();
+        for (ServiceCategory.Entry entry : category.getEntries()) {
+            String cat = translateCategoryName(entry.categoryId);
+            if (!entry.hasServices()) {
+                parts.add(cat);
+                continue;
+            }
 
-                if (englishValue.equalsIgnoreCase(english)) {
-                    String localized = localRes.getString(resId);
-                    return localized;
-                }
+            List<String> localizedServices = new ArrayList<>();
+            for (String svc : entry.services) {
+                localizedServices.add(translateServiceNameToLocal(svc));
             }
-        } catch (Exception e) {
-            Log.e("Translator", "translateCategoryName error", e);
+            parts.add(cat + ": " + String.join(", ", localizedServices));
         }
+        return String.join(" | ", parts);
+    }
+
+    // ----------------------------------------------------------------------
+    // CATEGORY TRANSLATION (EN → localized)
+    // ----------------------------------------------------------------------
+    public String translateCategoryName(String english) {
+        if (english == null || english.trim().isEmpty()) return "";
 
-        String fallback = capitalize(english);
-        return fallback;
+        String localized = dictionary().categoryToLocal.get(key(english));
+        return localized != null ? localized : capitalize(english);
     }
 
     // ----------------------------------------------------------------------
@@ -179,35 +215,14 @@ public class FirestoreStringTranslator {
     // ----------------------------------------------------------------------
     public String translateServiceNameToLocal(String englishKey) {
         if (englishKey == null || englishKey.trim().isEmpty()) return "";
-       try {
-            Resources localRes = getLocalResources();
-            Resources enRes = getEnglishResources();
-
-            Field[] fields = R.string.class.getDeclaredFields();
-            int matchAttempts = 0;
-
-            for (Field field : fields) {
-                int resId = field.getInt(null);
-
-                String enValue = enRes.getString(resId);
-                String resourceName = localRes.getResourceEntryName(resId);
-
-                matchAttempts++;
-                if (matchAttempts <= 3 && resourceName.startsWith("svc_")) {
-                    Log.e("TRACE_TRANSLATOR", "    ↳ Comparing with resource: \"" + enValue + "\" [" + resourceName + "]");
-                }
 
-                if (enValue.equalsIgnoreCase(englishKey)) {
-                    String localized = localRes.getString(resId);
-                    return localized;
-                }
-            }
-        } catch (Exception e) {
-            Log.e("Translator", "Reflection error", e);
+        Dictionary dict = dictionary();
+        String localized = dict.serviceToLocal.get(key(englishKey));
+        if (localized == null) {
+            // Legacy strings sometimes list a bare category where a service is expected
+            localized = dict.categoryToLocal.get(key(englishKey));
         }
-
-        String fallback = capitalize(englishKey);
-        return fallback;
+        return localized != null ? localized : capitalize(englishKey);
     }
 
     private String capitalize(String s) {
@@ -295,68 +310,22 @@ public class FirestoreStringTranslator {
     public String reverseCategoryName(String localizedName) {
         if (localizedName == null || localizedName.trim().isEmpty()) return localizedName;
 
-        try {
-            Resources localRes = getLocalResources();
-            Resources enRes = getEnglishResources();
-
-            Field[] fields = R.string.class.getDeclaredFields();
-            for (Field field : fields) {
-                int resId = field.getInt(null);
-
-                String resourceName = localRes.getResourceEntryName(resId);
-                if (!resourceName.startsWith("cat_")) continue;
-
-                String localizedValue = localRes.getString(resId);
-                if (localizedValue.equalsIgnoreCase(localizedName)) {
-                    return enRes.getString(resId);
-                }
-            }
-        } catch (Exception e) {
-            Log.e("Translator", "reverseCategoryName error", e);
-        }
-
-        return localizedName;
+        String english = dictionary().categoryToEnglish.get(key(localizedName));
+        return english != null ? english : localizedName;
     }
 
     //********************************************************************************************
     // * Reverse translate service name: Localized → English
-    // * Algorithm:
-    // * 1. Find localized string in localized resources → get resource ID
-    // * 2. Use that resource ID to get English string from English resources
+    // * Looks the localized string up in the reverse service map; unknown names are
+    // * returned unchanged.
     // *******************************************************************************************
     private String reverseServiceName(String localizedName) {
         if (localizedName == null || localizedName.trim().isEmpty()) {
             return localizedName;
         }
 
-        try {
-            Resources localRes = getLocalResources();
-            Resources enRes = getEnglishResources();
-
-            Field[] fields = R.string.class.getDeclaredFields();
-
-            for (Field field : fields) {
-                int resId = field.getInt(null);
-
-                String resourceName = localRes.getResourceEntryName(resId);
-                // Only check service strings (svc_*)
-                if (!resourceName.startsWith("svc_")) continue;
-
-                // Step 1: Find matching localized string
-                String localizedValue = localRes.getString(resId);
-
-                if (localizedValue.equalsIgnoreCase(localizedName)) {
-                    // Step 2: Use the same resource ID to get English value
-                    String englishValue = enRes.getString(resId);
-                    return englishValue;
-                }
-            }
-        } catch (Exception e) {
-            Log.e("Translator", "reverseServiceName error", e);
-        }
-
-        // If no match found, return original
-        return localizedName;
+        String english = dictionary().serviceToEnglish.get(key(localizedName));
+        return english != null ? english : localizedName;
     }
 
     private String capitalizeWords(String input) {
@@ -390,33 +359,7 @@ public class FirestoreStringTranslator {
     // PARSER FOR FIRESTORE STRING (English)
     // ----------------------------------------------------------------------
     public static Map<String, Set<String>> parseEnglishCategoryString(String savedCategory) {
-        Map<String, Set<String>> result = new LinkedHashMap<>();
-
-        if (savedCategory == null || savedCategory.trim().isEmpty()) return result;
-
-        String[] parts = savedCategory.split("\\|");
-        for (String part : parts) {
-            part = part.trim();
-            if (part.isEmpty()) continue;
-
-            if (!part.contains(":")) {
-                result.put(part, new HashSet<>());
-                continue;
-            }
-
-            String[] split = part.split(":", 2);
-            String cat = split[0].trim();
-            String[] svcList = split[1].split(",");
-
-            Set<String> services = new HashSet<>();
-            for (String s : svcList) {
-                services.add(s.trim());
-            }
-
-            result.put(cat, services);
-        }
-
-        return result;
+        return ServiceCategory.parse(savedCategory).toSelectionMap();
     }
 
     public String buildLocalizedCategoryString(Map<String, Set<String>> localizedMap) {
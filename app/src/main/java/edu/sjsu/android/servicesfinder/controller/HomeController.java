@@ -3,11 +3,19 @@ package edu.sjsu.android.servicesfinder.controller;
 import android.content.Context;
 import android.util.Log;
 
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import edu.sjsu.android.servicesfinder.database.ProviderServiceDatabase;
+import edu.sjsu.android.servicesfinder.database.ProviderServiceRepository;
 import edu.sjsu.android.servicesfinder.model.Provider;
 import edu.sjsu.android.servicesfinder.model.ProviderService;
 
@@ -18,12 +26,35 @@ import edu.sjsu.android.servicesfinder.model.ProviderService;
 public class HomeController {
 
     private static final String TAG = "HomeController";
+    public static final int FEED_PAGE_SIZE = 20;
     private final ProviderServiceDatabase database;
+    private final ProviderServiceRepository repository;   // Room cache + Firestore (home list)
     private HomeControllerListener listener;
 
     // Cache for search optimization
     private Map<Provider, List<ProviderService>> cachedData;
     private String lastSearchQuery = "";
+    private final ServiceSearchEngine searchEngine;   // narrows the last FTS results while typing
+
+    // One request at a time per kind; starting another cancels the one before it. Both
+    // scopes close with the activity, so nothing is delivered after it is destroyed.
+    private final CancellationScope listRequests;     // the load behind the list on screen
+    private final CancellationScope searchRequests;   // the search being typed
+    private CancellationToken listToken;
+
+    // Paged feed state
+    private DocumentSnapshot feedCursor;
+    private boolean feedLoading = false;
+    private boolean feedHasMore = true;
+    private boolean feedFirstPageShown = false;   // network first page (or cached stand-in) delivered
+
+    // Live service changes (between startLiveUpdates() and stopLiveUpdates()), listened to
+    // from liveSince on: the oldest service of the first feed page, or the newest of a full load
+    private boolean liveRequested = false;
+    private long liveSince = NO_WINDOW;
+    private ListenerRegistration liveUpdates;
+    private int liveGeneration = 0;   // drops deliveries from a registration already replaced
+    private static final long NO_WINDOW = Long.MAX_VALUE;
 
     public void setListener(HomeControllerListener listener) {
         this.listener = listener;
@@ -32,9 +63,16 @@ public class HomeController {
     private final Context context;
 
     // Constructor
-    public HomeController(Context context) {
+    public HomeController(Context context, LifecycleOwner lifecycleOwner) {
         this.context = context.getApplicationContext();
         this.database = new ProviderServiceDatabase(this.context); //
+        this.repository = new ProviderServiceRepository(this.context);
+        this.searchEngine = new ServiceSearchEngine(this.context);
+
+        CancellationScope lifecycle = CancellationScope.forLifecycle(lifecycleOwner);
+        this.listRequests = lifecycle.child();
+        this.searchRequests = lifecycle.child();
+        this.listToken = listRequests.next();
     }
 
     //* ****************************************************************
@@ -65,45 +103,21 @@ public class HomeController {
         });
     }
 
+    //* ****************************************************************
+    //* Served from the local cache first, then refreshed from Firestore:
+    //* the listener may be called twice (cached list, then fresh list)
+    // *****************************************************************
     public void loadAllProvidersWithServices() {
-        database.getAllProvidersWithServices(context, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
+        cancelFeed();
+        final CancellationToken token = listToken;
+        repository.loadProvidersWithServices(new ProviderServiceRepository.OnHomeDataLoadedListener() {
 
             @Override
-            public void onSuccess(Map<Provider, List<ProviderService>> providerServiceMap) {
+            public void onDataLoaded(Map<Provider, List<ProviderService>> providerServiceMap, boolean fromCache) {
+                if (token.isCancellationRequested()) return; // list was replaced meanwhile
                 cachedData = providerServiceMap;
+                setLiveWindow(newestTimestamp(providerServiceMap));
 
-                FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
-                int providerIndex = 0;
-                for (Map.Entry<Provider, List<ProviderService>> entry : providerServiceMap.entrySet()) {
-                    Provider provider = entry.getKey();
-                    List<ProviderService> services = entry.getValue();
-
-                    providerIndex++;
-
-                    int serviceIndex = 0;
-                    for (ProviderService service : services) {
-                        serviceIndex++;
-
-                        String originalTitle = service.getServiceTitle();
-                        String originalCategory = service.getCategory();
-
-                        // DON'T translate service title - it's a custom name entered by the provider
-                        // if (originalTitle != null) {
-                        //     String localizedTitle = translator.translateServiceNameToLocal(originalTitle);
-                        //     service.setServiceTitle(localizedTitle);
-                        // }
-
-                        if (originalCategory != null) {
-                            // Use translateCategory() instead of translateCategoryName()
-                            // because it handles legacy format: "Category1 | Category2: Service1, Service2"
-                            String localizedCategory = translator.translateCategory(originalCategory);
-                            service.setCategory(localizedCategory);
-
-                            boolean catChanged = !originalCategory.equals(localizedCategory);
-
-                        }
-                    }
-                }
                 if (listener != null) {
                     if (providerServiceMap.isEmpty()) {
                         listener.onNoDataAvailable();
@@ -115,6 +129,7 @@ public class HomeController {
 
             @Override
             public void onError(String errorMessage) {
+                if (token.isCancellationRequested()) return;
                 if (listener != null) {
                     listener.onError(errorMessage);
                 }
@@ -122,127 +137,302 @@ public class HomeController {
         });
     }
 
-    ///* ****************************************************************
-    //* Search providers and services
-    //*****************************************************************
-    public void searchProvidersAndServices(String query) {
-        lastSearchQuery = query;
-
-        if (query == null || query.trim().isEmpty()) {
-            loadAllProvidersWithServices();
-            return;
-        }
+    //* ****************************************************************
+    //* Paged home feed (newest first, FEED_PAGE_SIZE services per page)
+    //* loadFirstFeedPage() restarts the feed, loadNextFeedPage() appends
+    // *****************************************************************
+    public void loadFirstFeedPage() {
+        cancelFeed();
+        feedCursor = null;
+        feedHasMore = true;
+        feedFirstPageShown = false;
+        loadNextFeedPage();
+        showCachedFirstPage();
+    }
 
-        database.searchProvidersAndServices(context, query, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
+    // Until the first network page arrives, show the newest cached services in its place
+    private void showCachedFirstPage() {
+        final CancellationToken token = listToken;
+        repository.loadCached(new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
             @Override
-            public void onSuccess(Map<Provider, List<ProviderService>> providerServiceMap) {
-                if (listener != null) {
-                    if (providerServiceMap.isEmpty()) {
-                        listener.onSearchResultsEmpty(query);
-                    } else {
-                        listener.onSearchResultsLoaded(providerServiceMap, query);
+            public void onSuccess(Map<Provider, List<ProviderService>> cached) {
+                if (token.isCancellationRequested() || feedFirstPageShown || cached.isEmpty()) return;
+                feedFirstPageShown = true;
+
+                // Cache is newest-first per provider; keep the FEED_PAGE_SIZE newest services overall
+                List<ProviderService> newest = new ArrayList<>();
+                Map<ProviderService, Provider> owners = new HashMap<>();
+                for (Map.Entry<Provider, List<ProviderService>> entry : cached.entrySet()) {
+                    for (ProviderService service : entry.getValue()) {
+                        newest.add(service);
+                        owners.put(service, entry.getKey());
+                    }
+                }
+                newest.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+
+                Map<Provider, List<ProviderService>> page = new LinkedHashMap<>();
+                for (ProviderService service : newest.subList(0, Math.min(FEED_PAGE_SIZE, newest.size()))) {
+                    Provider owner = owners.get(service);
+                    List<ProviderService> list = page.get(owner);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        page.put(owner, list);
                     }
+                    list.add(service);
+                }
+
+                if (listener != null) {
+                    // hasMore = false: no paging from the stand-in; the network page replaces it
+                    listener.onFeedPageLoaded(page, true, false);
                 }
             }
 
             @Override
             public void onError(String errorMessage) {
-                if (listener != null) {
-                    listener.onError(errorMessage);
-                }
+                // Cache miss is not an error for the user; the network page will follow
             }
         });
     }
 
-    //* ****************************************************************
-    //* Filter by category (check CAT has : ito know provider has service of CAT or not
-    //*****************************************************************
-        public void filterByCategory(String category) {
+    public void loadNextFeedPage() {
+        if (feedLoading || !feedHasMore) return;
+
+        feedLoading = true;
+        final CancellationToken token = listToken;
+        final boolean firstPage = feedCursor == null;
+
+        repository.getActiveServicesPage(feedCursor, FEED_PAGE_SIZE,
+                new ProviderServiceDatabase.OnServicesPageLoadedListener() {
+                    @Override
+                    public void onPageLoaded(Map<Provider, List<ProviderService>> page,
+                                             DocumentSnapshot nextCursor, boolean hasMore) {
+                        if (token.isCancellationRequested()) return; // feed was restarted or replaced
+
+                        feedLoading = false;
+                        feedCursor = nextCursor;
+                        feedHasMore = hasMore;
+                        if (firstPage) {
+                            feedFirstPageShown = true;
+                            // Later pages stay one-shot reads: moving the window would re-attach
+                            // the listener and read everything loaded so far again
+                            setLiveWindow(feedWindowStart());
+                        }
 
-        Log.e("CAT_FILTER", "Filtering for category: " + category);
+                        if (listener != null) {
+                            listener.onFeedPageLoaded(page, firstPage, hasMore);
+                        }
+                    }
 
-        database.getAllProvidersWithServices(context, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
-            @Override
-            public void onSuccess(Map<Provider, List<ProviderService>> providerServiceMap) {
+                    @Override
+                    public void onError(String errorMessage) {
+                        if (token.isCancellationRequested()) return;
 
-                Map<Provider, List<ProviderService>> finalFilteredMap = new HashMap<>();
+                        feedLoading = false;
+                        // Offline with a cached stand-in on screen: keep showing it
+                        if (firstPage && feedFirstPageShown) {
+                            Log.w(TAG, "Feed refresh failed, showing cached services: " + errorMessage);
+                            return;
+                        }
+                        if (listener != null) {
+                            listener.onError(errorMessage);
+                        }
+                    }
+                });
+    }
 
-                for (Map.Entry<Provider, List<ProviderService>> entry : providerServiceMap.entrySet()) {
-                    Provider provider = entry.getKey();
-                    List<ProviderService> services = entry.getValue();
+    //* ****************************************************************
+    //* Revalidates the top of the feed without restarting it: the newest page is read
+    //* again, the cursor and the pages already shown further down stay as they are
+    // *****************************************************************
+    public void refreshFeedHead() {
+        final CancellationToken token = listToken;
+        repository.getActiveServicesPage(null, FEED_PAGE_SIZE,
+                new ProviderServiceDatabase.OnServicesPageLoadedListener() {
+                    @Override
+                    public void onPageLoaded(Map<Provider, List<ProviderService>> page,
+                                             DocumentSnapshot nextCursor, boolean hasMore) {
+                        if (token.isCancellationRequested()) return; // feed was restarted or replaced
+                        if (listener != null) listener.onFeedHeadRefreshed(page, hasMore);
+                    }
 
-                    List<ProviderService> matched = new ArrayList<>();
+                    @Override
+                    public void onError(String errorMessage) {
+                        // Keep showing what is on screen; the next resume tries again
+                        Log.w(TAG, "Feed revalidation failed: " + errorMessage);
+                    }
+                });
+    }
 
-                    for (ProviderService service : services) {
+    public boolean isFeedLoading() {
+        return feedLoading;
+    }
 
-                        String rawCat = service.getCategory();
-                        if (rawCat == null) continue;
+    public boolean feedHasMore() {
+        return feedHasMore;
+    }
 
-                        String[] segments = rawCat.split("\\|");
-                        for (String seg : segments) {
-                            seg = seg.trim();
+    // Drop any page still in flight; its result would belong to an outdated list
+    private void cancelFeed() {
+        listToken = listRequests.next();
+        feedLoading = false;
+    }
 
-                            // check if segment starts with category and has services after :
-                            if (seg.startsWith(category)) {
-                                int idx = seg.indexOf(category) + category.length();
+    //* ****************************************************************
+    //* Live updates: service edits, additions and removals arrive as deltas,
+    //* scoped to a fixed window (see setLiveWindow()); they are forwarded
+    //* so the list can update just the affected cards
+    // *****************************************************************
+    public void startLiveUpdates() {
+        liveRequested = true;
+        attachLiveUpdates();
+    }
 
-                                if (idx < seg.length() && seg.charAt(idx) == ':') {
-                                    // CATEGORY HAS SERVICES — keep this service
-                                    matched.add(service);
-                                    break;
-                                }
-                            }
-                        }
-                    }
+    public void stopLiveUpdates() {
+        liveRequested = false;
+        detachLiveUpdates();
+    }
 
-                    if (!matched.isEmpty()) {
-                        finalFilteredMap.put(provider, matched);
-                    }
-                }
+    // Listening starts once something is loaded; the window moves only when the list is
+    // loaded again from the top (first feed page, full load)
+    private void setLiveWindow(long since) {
+        if (since == liveSince) return;
+        liveSince = since;
+        if (liveRequested) {
+            detachLiveUpdates();
+            attachLiveUpdates();
+        }
+    }
 
-                Log.e("CAT_FILTER", "FINAL filtered providers = " + finalFilteredMap.size());
+    private void attachLiveUpdates() {
+        if (liveUpdates != null || liveSince == NO_WINDOW) return;
 
+        final int generation = ++liveGeneration;
+        final long since = liveSince;
+        liveUpdates = database.listenForActiveServiceChanges(since, new ProviderServiceDatabase.OnServiceChangesListener() {
+            @Override
+            public void onServiceChanges(List<ProviderServiceDatabase.ServiceChange> changes, boolean fullSnapshot) {
+                if (generation != liveGeneration) return;   // stopped or moved while owners were looked up
                 if (listener != null) {
-                    if (finalFilteredMap.isEmpty()) listener.onNoDataAvailable();
-                    else listener.onProvidersWithServicesLoaded(finalFilteredMap);
+                    listener.onServicesChanged(changes, fullSnapshot, since);
                 }
             }
 
             @Override
             public void onError(String errorMessage) {
-                if (listener != null) listener.onError(errorMessage);
+                // The list keeps working from reads; only live updates stop
+                Log.w(TAG, "Live service updates failed: " + errorMessage);
             }
         });
     }
-    //**********************************************************************************************
-    // * Extract the provider category/services from a translated all-strings
-    //**********************************************************************************************
-    public String extractProviderCategoryWithServices(String categoryString) {
-        if (categoryString == null || categoryString.isEmpty()) {
-            return "";
-        }
 
-        // Split by "|" to get all category segments
-        String[] segments = categoryString.split("\\|");
+    private void detachLiveUpdates() {
+        liveGeneration++;
+        if (liveUpdates == null) return;
+        liveUpdates.remove();
+        liveUpdates = null;
+    }
 
-        List<String> categoriesWithServices = new ArrayList<>();
+    // Timestamp of the oldest service on the first feed page (0 = the feed is empty);
+    // read right after that page arrives, while the cursor still points at its end
+    private long feedWindowStart() {
+        if (feedCursor == null) return 0;
+        Long timestamp = feedCursor.getLong("timestamp");
+        return timestamp != null ? timestamp : 0;
+    }
 
-        // Find ALL segments that contain ":" (meaning they have services)
-        for (String segment : segments) {
-            String trimmed = segment.trim();
-            if (trimmed.contains(":")) {
-                // This category has services - add it to the list
-                categoriesWithServices.add(trimmed);
+    private static long newestTimestamp(Map<Provider, List<ProviderService>> data) {
+        long newest = 0;
+        for (List<ProviderService> services : data.values()) {
+            for (ProviderService service : services) {
+                newest = Math.max(newest, service.getTimestamp());
             }
         }
+        return newest;
+    }
+
+    ///* ****************************************************************
+    //* Search providers and services
+    //*****************************************************************
+    public void searchProvidersAndServices(String query) {
+        cancelFeed();
+        lastSearchQuery = query;
+
+        if (query == null || query.trim().isEmpty()) {
+            searchEngine.clear();
+            loadAllProvidersWithServices();
+            return;
+        }
 
-        // Join all categories with services using " | "
-        if (!categoriesWithServices.isEmpty()) {
-            return String.join(" | ", categoriesWithServices);
+        final CancellationToken token = listToken;
+        final CancellationToken search = searchRequests.next();
+
+        // More characters typed: only the previous results can still match
+        if (searchEngine.canNarrow(query)) {
+            searchEngine.narrow(query, search, results -> {
+                if (token.isCancellationRequested() || search.isCancellationRequested()) return;
+                deliverSearchResults(results, query);
+            });
+            return;
         }
 
-        // If no category has services, return the first one
-        return segments.length > 0 ? segments[0].trim() : categoryString;
+        // Otherwise the local full-text index; no network round trip per keystroke
+        searchEngine.clear();
+        repository.searchProvidersAndServices(query, search, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
+            @Override
+            public void onSuccess(Map<Provider, List<ProviderService>> providerServiceMap) {
+                if (token.isCancellationRequested() || search.isCancellationRequested()) return; // superseded
+                searchEngine.setResults(query, providerServiceMap);
+                deliverSearchResults(providerServiceMap, query);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                if (token.isCancellationRequested() || search.isCancellationRequested()) return;
+                if (listener != null) {
+                    listener.onError(errorMessage);
+                }
+            }
+        });
+    }
+
+    private void deliverSearchResults(Map<Provider, List<ProviderService>> results, String query) {
+        if (listener == null) return;
+        if (results.isEmpty()) {
+            listener.onSearchResultsEmpty(query);
+        } else {
+            listener.onSearchResultsLoaded(results, query);
+        }
+    }
+
+    // Called as soon as the query text changes again, before the debounce fires
+    public void cancelSearch() {
+        searchRequests.cancel();
+    }
+
+    //* ****************************************************************
+    //* Filter by category: Firestore returns only the services whose
+    //* categoryKeys contain CAT (provider picked a service under CAT)
+    //*****************************************************************
+    public void filterByCategory(String category) {
+        cancelFeed();
+        final CancellationToken token = listToken;
+
+        database.getProvidersByCategory(context, category, token, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
+            @Override
+            public void onSuccess(Map<Provider, List<ProviderService>> providerServiceMap) {
+                if (token.isCancellationRequested()) return; // list was replaced meanwhile
+                if (listener != null) {
+                    if (providerServiceMap.isEmpty()) listener.onNoDataAvailable();
+                    else listener.onProvidersWithServicesLoaded(providerServiceMap);
+                }
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                if (token.isCancellationRequested()) return;
+                if (listener != null) listener.onError(errorMessage);
+            }
+        });
     }
 
     // =========================================================
@@ -254,6 +444,18 @@ public class HomeController {
         // Called when providers with services are loaded
         void onProvidersWithServicesLoaded(Map<Provider, List<ProviderService>> providerServiceMap);
 
+        // Called for each page of the home feed; firstPage = replace the list, otherwise append
+        void onFeedPageLoaded(Map<Provider, List<ProviderService>> page, boolean firstPage, boolean hasMore);
+
+        // Called with a fresh copy of the newest feed page (see refreshFeedHead());
+        // hasMore = false means the page is the whole feed
+        void onFeedHeadRefreshed(Map<Provider, List<ProviderService>> page, boolean hasMore);
+
+        // Called with live service changes (see startLiveUpdates()). With fullSnapshot, the
+        // changes list every active service at or after since; any other card in that
+        // range is gone
+        void onServicesChanged(List<ProviderServiceDatabase.ServiceChange> changes, boolean fullSnapshot, long since);
+
         // Called when search results are loaded
         void onSearchResultsLoaded(Map<Provider, List<ProviderService>> providerServiceMap, String query);
 
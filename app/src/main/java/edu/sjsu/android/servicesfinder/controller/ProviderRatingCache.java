@@ -0,0 +1,138 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.sjsu.android.servicesfinder.database.ReviewDatabase;
+import edu.sjsu.android.servicesfinder.model.Provider;
+
+/**
+ * PROVIDERRATINGCACHE
+ * Shared, app-wide cache of provider ratings (average + review count).
+ * - prefetchProviders() takes the rating aggregates straight from the provider documents
+ *   the home loaders already read (ratingSum/ratingCount), so most cards cost no extra read
+ * - prefetch() resolves the remaining provider IDs with batched whereIn queries
+ *   (see ReviewDatabase.getAverageRatings)
+ * - getCached() is synchronous, so card binds never touch the network
+ * - listeners are told which providers were resolved so they can refresh those rows
+ * All access happens on the main thread (Firestore delivers callbacks there).
+ */
+public final class ProviderRatingCache {
+
+    private static final String TAG = "ProviderRatingCache";
+    private static ProviderRatingCache INSTANCE;
+
+    private final ReviewDatabase reviewDatabase = new ReviewDatabase();
+    private final Map<String, ReviewDatabase.RatingSummary> ratings = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final List<OnRatingsResolvedListener> listeners = new ArrayList<>();
+
+    private ProviderRatingCache() {}
+
+    public static ProviderRatingCache get() {
+        if (INSTANCE == null) {
+            INSTANCE = new ProviderRatingCache();
+        }
+        return INSTANCE;
+    }
+
+    // =========================================================
+    // READ (synchronous)
+    // =========================================================
+    // Returns null while the provider has not been resolved yet
+    public ReviewDatabase.RatingSummary getCached(String providerId) {
+        return providerId == null ? null : ratings.get(providerId);
+    }
+
+    // =========================================================
+    // PREFETCH (batched)
+    // =========================================================
+    public void prefetchProviders(Collection<Provider> providers) {
+        Set<String> unresolved = new HashSet<>();
+        for (Provider provider : providers) {
+            if (provider.getId() == null) continue;
+
+            Double sum = provider.getRatingSum();
+            Long count = provider.getRatingCount();
+            if (sum != null && count != null) {
+                // Freshly read with the provider, so it wins over an older cached value
+                ratings.put(provider.getId(), count == 0
+                        ? new ReviewDatabase.RatingSummary(0.0f, 0)
+                        : new ReviewDatabase.RatingSummary((float) (sum / count), count.intValue()));
+            } else {
+                unresolved.add(provider.getId());
+            }
+        }
+        prefetch(unresolved);
+    }
+
+    public void prefetch(Collection<String> providerIds) {
+        Set<String> missing = new HashSet<>();
+        for (String id : providerIds) {
+            if (id != null && !ratings.containsKey(id) && !inFlight.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) return;
+
+        inFlight.addAll(missing);
+        reviewDatabase.getAverageRatings(missing, new ReviewDatabase.OnRatingsCalculatedListener() {
+            @Override
+            public void onRatingsCalculated(Map<String, ReviewDatabase.RatingSummary> ratingsByProvider) {
+                inFlight.removeAll(missing);
+                ratings.putAll(ratingsByProvider);
+                notifyResolved(ratingsByProvider.keySet());
+            }
+
+            @Override
+            public void onError(String error) {
+                // Leave them unresolved so the next prefetch retries
+                inFlight.removeAll(missing);
+                Log.e(TAG, "Rating prefetch failed: " + error);
+            }
+        });
+    }
+
+    // =========================================================
+    // UPDATE / INVALIDATE
+    // =========================================================
+    public void put(String providerId, ReviewDatabase.RatingSummary summary) {
+        if (providerId == null || summary == null) return;
+        ratings.put(providerId, summary);
+        notifyResolved(Collections.singleton(providerId));
+    }
+
+    // Drop a provider so the next prefetch reads it again (e.g. after a new review)
+    public void invalidate(String providerId) {
+        if (providerId != null) ratings.remove(providerId);
+    }
+
+    // =========================================================
+    // LISTENERS
+    // =========================================================
+    public void addListener(OnRatingsResolvedListener listener) {
+        if (!listeners.contains(listener)) listeners.add(listener);
+    }
+
+    public void removeListener(OnRatingsResolvedListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyResolved(Set<String> providerIds) {
+        for (OnRatingsResolvedListener listener : new ArrayList<>(listeners)) {
+            listener.onRatingsResolved(providerIds);
+        }
+    }
+
+    public interface OnRatingsResolvedListener {
+        void onRatingsResolved(Set<String> providerIds);
+    }
+}
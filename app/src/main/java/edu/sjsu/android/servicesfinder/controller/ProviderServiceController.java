@@ -37,10 +37,24 @@ public class ProviderServiceController {
             return;
         }
 
+        // Screens showing the catalog refresh on their next resume
+        ProviderServiceDatabase.OnServiceSaveListener signalling = new ProviderServiceDatabase.OnServiceSaveListener() {
+            @Override
+            public void onSuccess(String serviceId) {
+                RefreshPolicy.signalChange();
+                listener.onSuccess(serviceId);
+            }
+
+            @Override
+            public void onError(String error) {
+                listener.onError(error);
+            }
+        };
+
         if (service.getId() != null && !service.getId().isEmpty()) {
-            database.updateService(providerId, service.getId(), service, listener);
+            database.updateService(providerId, service.getId(), service, signalling);
         } else {
-            database.saveService(providerId, service, listener);
+            database.saveService(providerId, service, signalling);
         }
     }
 
@@ -75,6 +89,8 @@ public class ProviderServiceController {
                     draft.setContactPreference(doc.getString("contactPreference"));
                     draft.setCategory(doc.getString("category"));
                     draft.setImageUrl(doc.getString("imageUrl"));
+                    draft.setMediumImageUrl(doc.getString("mediumImageUrl"));
+                    draft.setThumbnailUrl(doc.getString("thumbnailUrl"));
 
                     listener.onDraftLoaded(draft);
                 })
@@ -114,6 +130,8 @@ public class ProviderServiceController {
         private String contactPreference;
         private String category;
         private String imageUrl;
+        private String mediumImageUrl;
+        private String thumbnailUrl;
 
         public String getId() { return id; }
         public String getServiceTitle() { return serviceTitle; }
@@ -124,6 +142,8 @@ public class ProviderServiceController {
         public String getContactPreference() { return contactPreference; }
         public String getCategory() { return category; }
         public String getImageUrl() { return imageUrl; }
+        public String getMediumImageUrl() { return mediumImageUrl; }
+        public String getThumbnailUrl() { return thumbnailUrl; }
 
         public void setId(String id) { this.id = id; }
         public void setServiceTitle(String serviceTitle) { this.serviceTitle = serviceTitle; }
@@ -134,6 +154,8 @@ public class ProviderServiceController {
         public void setContactPreference(String contactPreference) { this.contactPreference = contactPreference; }
         public void setCategory(String category) { this.category = category; }
         public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+        public void setMediumImageUrl(String mediumImageUrl) { this.mediumImageUrl = mediumImageUrl; }
+        public void setThumbnailUrl(String thumbnailUrl) { this.thumbnailUrl = thumbnailUrl; }
     }
     public interface OnDraftLoadedListener {
         void onDraftLoaded(ServiceDraft draft);
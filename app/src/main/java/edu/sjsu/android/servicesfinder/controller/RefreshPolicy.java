@@ -0,0 +1,43 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * REFRESHPOLICY
+ * Stale-while-revalidate rule for a screen that shows catalog data.
+ * - the screen keeps showing what it has; shouldRefresh() says whether a background
+ *   refresh is due: never loaded, older than the TTL, or a change was signalled since
+ * - signalChange() is called app-wide wherever the catalog is written (service saved,
+ *   provider edited or deleted, image patched in), so the next check refreshes at once
+ * - markRefreshed() is called whenever the screen (re)loads its data
+ */
+public final class RefreshPolicy {
+
+    // Bumped on every catalog write; each policy remembers the value it last loaded at
+    private static final AtomicLong CHANGE_VERSION = new AtomicLong();
+
+    private final long ttlMs;
+    private long refreshedAt = -1;     // SystemClock.elapsedRealtime(); -1 = never
+    private long seenVersion = -1;
+
+    public RefreshPolicy(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public static void signalChange() {
+        CHANGE_VERSION.incrementAndGet();
+    }
+
+    public boolean shouldRefresh() {
+        return refreshedAt < 0
+                || SystemClock.elapsedRealtime() - refreshedAt >= ttlMs
+                || seenVersion != CHANGE_VERSION.get();
+    }
+
+    public void markRefreshed() {
+        refreshedAt = SystemClock.elapsedRealtime();
+        seenVersion = CHANGE_VERSION.get();
+    }
+}
@@ -8,6 +8,9 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
@@ -15,23 +18,29 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import edu.sjsu.android.servicesfinder.R;
 import edu.sjsu.android.servicesfinder.model.Review;
 
-public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewViewHolder> {
+// Review list of the detail screen. New lists are diffed in the background (AsyncListDiffer),
+// so reloading the reviews only rebinds the rows that changed; rows have stable IDs (review ID).
+public class ReviewAdapter extends ListAdapter<Review, ReviewAdapter.ReviewViewHolder> {
 
     private final Context context;
-    private List<Review> reviews;
+    private final StableIds stableIds = new StableIds();
 
     public ReviewAdapter(Context context) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                .setBackgroundThreadExecutor(AppExecutors.computation())
+                .build());
         this.context = context;
-        this.reviews = new ArrayList<>();
+        setHasStableIds(true);
     }
 
+    // The list is copied; the caller may keep changing its own
     public void setReviews(List<Review> reviews) {
-        this.reviews = reviews;
-        notifyDataSetChanged();
+        submitList(new ArrayList<>(reviews));
     }
 
     @NonNull
@@ -44,15 +53,38 @@ public class ReviewAdapter extends RecyclerView.Adapter<ReviewAdapter.ReviewView
 
     @Override
     public void onBindViewHolder(@NonNull ReviewViewHolder holder, int position) {
-        Review review = reviews.get(position);
+        Review review = getItem(position);
         holder.bind(review);
     }
 
     @Override
-    public int getItemCount() {
-        return reviews.size();
+    public long getItemId(int position) {
+        return stableIds.idOf(keyOf(getItem(position)));
     }
 
+    // Review document ID; a review not read from Firestore falls back to author + time
+    private static String keyOf(Review review) {
+        return review.getId() != null ? review.getId() : review.getCustomerId() + "@" + review.getTimestamp();
+    }
+
+    // =========================================================
+    // DIFF CALLBACK (runs on AppExecutors.computation())
+    // =========================================================
+    private static final DiffUtil.ItemCallback<Review> DIFF_CALLBACK = new DiffUtil.ItemCallback<Review>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Review oldItem, @NonNull Review newItem) {
+            return keyOf(oldItem).equals(keyOf(newItem));
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Review oldItem, @NonNull Review newItem) {
+            return Objects.equals(oldItem.getCustomerName(), newItem.getCustomerName())
+                    && oldItem.getRating() == newItem.getRating()
+                    && Objects.equals(oldItem.getComment(), newItem.getComment())
+                    && oldItem.getTimestamp() == newItem.getTimestamp();
+        }
+    };
+
     public static class ReviewViewHolder extends RecyclerView.ViewHolder {
         private final TextView customerName;
         private final RatingBar ratingBar;
@@ -2,8 +2,8 @@ package edu.sjsu.android.servicesfinder.controller;
 
 import static android.provider.Settings.System.getString;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,13 +11,19 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.google.android.gms.tasks.CancellationToken;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import edu.sjsu.android.servicesfinder.R;
@@ -36,16 +42,30 @@ import edu.sjsu.android.servicesfinder.model.ProviderService;
  *   - availability (days)
  *   - category (example: Home, Automotive)
  *   - service image from Firebase Storage
+ *
+ * New lists are diffed against the shown one on a background thread (AsyncListDiffer),
+ * so a refresh, search or sort only rebinds the cards that actually changed or moved.
+ * Rows have stable IDs (provider + service ID).
+ * The text of each card (CardDisplay) is worked out on that background pool too, once
+ * per result set, so binding a card only assigns ready-made strings.
  *********************************************************************************/
-public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.ServiceCardViewHolder> {
+public class ServiceCardAdapter extends ListAdapter<ServiceCardAdapter.ServiceItem, ServiceCardAdapter.ServiceCardViewHolder>
+        implements ProviderRatingCache.OnRatingsResolvedListener {
+
+    // Partial-bind payload: only the rating text changed
+    private static final Object PAYLOAD_RATING = new Object();
 
     private final Context context;
+    private final ProviderRatingCache ratingCache = ProviderRatingCache.get();
+    private final StableIds stableIds = new StableIds();
 
     /**
-     * serviceItems = final list we feed to RecyclerView
+     * serviceItems = latest list handed to the differ (may still be diffing);
+     * getCurrentList() is what the RecyclerView shows right now.
      * Each entry combines provider + service
      */
-    private List<ServiceItem> serviceItems;
+    private List<ServiceItem> serviceItems = new ArrayList<>();
+    private final CancellationScope submits = new CancellationScope();   // a newer list drops an older one still being prepared
 
 
     // Callback to notify your Activity when user taps a card
@@ -53,8 +73,11 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
     private OnServiceClickListener listener;
 
     public ServiceCardAdapter(Context context) {
-        this.context = context;
-        this.serviceItems = new ArrayList<>();
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK)
+                .setBackgroundThreadExecutor(AppExecutors.computation())
+                .build());
+        this.context = context.getApplicationContext();
+        setHasStableIds(true);
     }
 
     /* ****************************************************************
@@ -73,9 +96,8 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
      *     ServiceItem(Provider, Service2)
      * Then RecyclerView can display each as a card.
      ****************************************************************/
-    @SuppressLint("NotifyDataSetChanged")
     public void setData(Map<Provider, List<ProviderService>> providerServiceMap) {
-        serviceItems.clear(); // remove previous content
+        List<ServiceItem> items = new ArrayList<>();
 
         // Loop through providers
         for (Map.Entry<Provider, List<ProviderService>> entry : providerServiceMap.entrySet()) {
@@ -84,18 +106,92 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
 
             // Loop each service under that provider
             for (ProviderService service : services) {
-                serviceItems.add(new ServiceItem(provider, service));
+                items.add(new ServiceItem(provider, service));
             }
         }
 
-        notifyDataSetChanged(); // tell RecyclerView data changed
+        setServiceItems(items);
     }
 
     // Accepts already-prepared items. Useful when sorted externally.
-    @SuppressLint("NotifyDataSetChanged")
+    // The list is copied; the caller may keep changing its own.
     public void setServiceItems(List<ServiceItem> items) {
-        this.serviceItems = items;
-        notifyDataSetChanged();
+        serviceItems = new ArrayList<>(items);
+        prefetchRatings(serviceItems);
+        prepareAndSubmit(serviceItems);
+    }
+
+    // Same flattening as setData(), appended below the current cards
+    public void appendData(Map<Provider, List<ProviderService>> providerServiceMap) {
+        List<ServiceItem> items = new ArrayList<>();
+        for (Map.Entry<Provider, List<ProviderService>> entry : providerServiceMap.entrySet()) {
+            for (ProviderService service : entry.getValue()) {
+                items.add(new ServiceItem(entry.getKey(), service));
+            }
+        }
+        appendServiceItems(items);
+    }
+
+    // Appends the next feed page below the current cards; existing cards are not rebound.
+    // Built on the latest submitted list, so a page arriving mid-diff is not lost.
+    public void appendServiceItems(List<ServiceItem> items) {
+        if (items.isEmpty()) return;
+        List<ServiceItem> combined = new ArrayList<>(serviceItems.size() + items.size());
+        combined.addAll(serviceItems);
+        combined.addAll(items);
+        serviceItems = combined;
+        prefetchRatings(items);
+        prepareAndSubmit(serviceItems);
+    }
+
+    // Fills in the CardDisplay of every item that has none yet (background), then diffs
+    private void prepareAndSubmit(List<ServiceItem> items) {
+        final CancellationToken token = submits.next();
+        Async.deliver(Async.cpu(token, () -> {
+            FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
+            for (ServiceItem item : items) {
+                if (item.display == null) {
+                    item.display = CardDisplay.of(context, translator, item);
+                }
+            }
+            return items;
+        }), token, this::submitList, e -> Log.e("ServiceCardAdapter", "Preparing cards failed", e));
+    }
+
+    /* ****************************************************************
+     * Ratings
+     * All provider IDs of a new result set are resolved in one batch;
+     * binds only read the shared cache. When a batch lands, the cards
+     * of those providers get a rating-only partial rebind.
+     ******************************************************************/
+    private void prefetchRatings(List<ServiceItem> items) {
+        Set<Provider> providers = new HashSet<>();
+        for (ServiceItem item : items) {
+            providers.add(item.provider);
+        }
+        ratingCache.prefetchProviders(providers);
+    }
+
+    @Override
+    public void onRatingsResolved(Set<String> providerIds) {
+        List<ServiceItem> shown = getCurrentList();
+        for (int i = 0; i < shown.size(); i++) {
+            if (providerIds.contains(shown.get(i).provider.getId())) {
+                notifyItemChanged(i, PAYLOAD_RATING);
+            }
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        ratingCache.addListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        ratingCache.removeListener(this);
     }
 
     @NonNull
@@ -105,10 +201,18 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
         // Inflate the XML layout (item_service_card.xml)
         // LayoutInflater converts XML -> actual UI View
 
-        View view = LayoutInflater.from(context)
+        View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_service_card, parent, false);
 
-        return new ServiceCardViewHolder(view);
+        ServiceCardViewHolder holder = new ServiceCardViewHolder(view);
+        // One click listener per holder; it looks up the card it currently shows
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onServiceClick(getItem(position));
+            }
+        });
+        return holder;
     }
 
     @Override
@@ -116,20 +220,47 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
 
         // Called when a view comes on screen. We grab the correct ServiceItem and bind data.
 
-        ServiceItem item = serviceItems.get(position);
-        holder.bind(item, listener);
+        holder.bind(getItem(position).display, ratingCache);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ServiceCardViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // Only the rating changed
+        holder.bindRating(getItem(position).provider.getId(), ratingCache);
     }
 
     @Override
-    public int getItemCount() {
-        // Total cards displayed
-        return serviceItems.size();
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).key());
     }
 
+    // Latest list handed to the adapter; getItemCount() lags behind it while a diff runs
     public List<ServiceItem> getServiceItems() {
         return serviceItems;
     }
 
+    // =========================================================
+    // DIFF CALLBACK (runs on AppExecutors.computation())
+    // =========================================================
+    // Same row = same provider + service document; same content = nothing a card shows changed
+    // (the rating is bound separately from ProviderRatingCache)
+    private static final DiffUtil.ItemCallback<ServiceItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<ServiceItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ServiceItem oldItem, @NonNull ServiceItem newItem) {
+            return oldItem.key().equals(newItem.key());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ServiceItem oldItem, @NonNull ServiceItem newItem) {
+            return Objects.equals(oldItem.display, newItem.display);
+        }
+    };
+
     // =========================================================
     // VIEW HOLDER
     // =========================================================
@@ -165,114 +296,120 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
         }
 
 
-        // Bind data from ServiceItem -> UI views
-
-        public void bind(ServiceItem item, OnServiceClickListener listener) {
-            Provider provider = item.provider;
-            ProviderService service = item.service;
+        // Bind precomputed card text -> UI views (no parsing or formatting here)
 
-            ReviewDatabase reviewDb = new ReviewDatabase();
-            String pid = provider.getId();   // or provider.getUid(), whichever exists
+        public void bind(CardDisplay display, ProviderRatingCache ratingCache) {
+            serviceTitle.setText(display.title);
+            bindOptional(servicePricing, display.priceLabel);
+            providerName.setText(display.providerLabel);
 
+            // Rating (from the shared cache, filled in batches by the adapter)
+            bindRating(display.providerId, ratingCache);
 
-            // Title
-            serviceTitle.setText(service.getServiceTitle());
+            serviceLocation.setText(display.location);
+            bindOptional(serviceAvailability, display.availability);
+            bindOptional(categoryBadge, display.categoryBadge);
 
+            // Verified badge hidden for now  (can enable when Firestore has "verified: true")
 
-            // Pricing
+            verifiedBadge.setVisibility(View.GONE);
 
-            if (service.getPricing() != null && !service.getPricing().isEmpty()) {
-                servicePricing.setText(service.getPricing());
-                servicePricing.setVisibility(View.VISIBLE);
+            // Load image using Glide (async, cached)
+            // Thumbnail variant only; older services fall back to the original image
+            if (display.imageUrl != null) {
+                Glide.with(itemView.getContext())
+                        .load(display.imageUrl)
+                        .placeholder(R.drawable.ic_service_placeholder) // shown while loading
+                        .error(R.drawable.ic_service_placeholder)       // shown if download fails
+                        .centerCrop()
+                        .into(serviceImage);
             } else {
-                servicePricing.setVisibility(View.GONE); // hide empty row
+                serviceImage.setImageResource(R.drawable.ic_service_placeholder);
             }
+        }
 
+        // null text = row hidden
+        private static void bindOptional(TextView view, String text) {
+            if (text != null) {
+                view.setText(text);
+                view.setVisibility(View.VISIBLE);
+            } else {
+                view.setVisibility(View.GONE);
+            }
+        }
 
-            // Provider
-
-            //providerName.setText("Provider: " + provider.getFullName());
-            providerName.setText(itemView.getContext().getString(R.string.provider_prefix, provider.getFullName()));
-
-
-            // Rating placeholder  (You can replace with average rating logic later)
-
-            //providerRating.setText("⭐ New");
-            //providerRating.setText(itemView.getContext().getString(R.string.new_service));
-            //providerRating.setVisibility(View.VISIBLE);
-            reviewDb.getAverageRating(pid, new ReviewDatabase.OnRatingCalculatedListener() {
-                @Override
-                public void onRatingCalculated(float averageRating, int totalReviews) {
-                    if (totalReviews == 0) {
-                        providerRating.setText(itemView.getContext().getString(R.string.new_service));
-                    } else {
-                        providerRating.setText(String.format("⭐ %.1f", averageRating));
-                    }
-                }
-
-                @Override
-                public void onError(String error) {
-                    providerRating.setText("⭐ --");
-                }
-            });
+        // Rating text; "⭐ --" until the provider's batch has been resolved
+        void bindRating(String providerId, ProviderRatingCache ratingCache) {
+            ReviewDatabase.RatingSummary summary = ratingCache.getCached(providerId);
+            if (summary == null) {
+                providerRating.setText("⭐ --");
+            } else if (summary.totalReviews == 0) {
+                providerRating.setText(itemView.getContext().getString(R.string.new_service));
+            } else {
+                providerRating.setText(String.format("⭐ %.1f", summary.averageRating));
+            }
+        }
+    }
 
+    // =========================================================
+    // CARD DISPLAY MODEL
+    // =========================================================
+    // Final, localized text of one card. Built off the main thread (prepareAndSubmit) and
+    // never changed afterwards; equal displays mean the card would look the same, which is
+    // what the differ uses as content equality.
+
+    public static final class CardDisplay {
+        final String providerId;
+        final String title;
+        final String priceLabel;       // null = hidden
+        final String providerLabel;
+        final String location;
+        final String availability;     // null = hidden
+        final String categoryBadge;    // null = hidden
+        final String imageUrl;         // null = placeholder
+
+        private CardDisplay(String providerId, String title, String priceLabel, String providerLabel,
+                            String location, String availability, String categoryBadge, String imageUrl) {
+            this.providerId = providerId;
+            this.title = title;
+            this.priceLabel = priceLabel;
+            this.providerLabel = providerLabel;
+            this.location = location;
+            this.availability = availability;
+            this.categoryBadge = categoryBadge;
+            this.imageUrl = imageUrl;
+        }
 
+        static CardDisplay of(Context context, FirestoreStringTranslator translator, ServiceItem item) {
+            Provider provider = item.provider;
+            ProviderService service = item.service;
 
             // Location derived from serviceArea OR provider address
             String location = service.getServiceArea();
             if (location == null || location.isEmpty()) {
                 location = extractCity(provider.getAddress());
             }
-            serviceLocation.setText(location);
-
-            // Availability (Mon,Tue → local)
-            if (service.getAvailability() != null && !service.getAvailability().isEmpty()) {
-                serviceAvailability.setText(
-                        FirestoreStringTranslator.get(itemView.getContext())
-                                .formatAvailabilityForDisplay(service.getAvailability())
-                );
-                serviceAvailability.setVisibility(View.VISIBLE);
-            } else {
-                serviceAvailability.setVisibility(View.GONE);
-            }
-            // Category badge (take only first category segment)
-            if (service.getCategory() != null && !service.getCategory().isEmpty()) {
-                // ADDED: Parse → Translate → Rebuild → Extract primary
-                HomeController controller = new HomeController(itemView.getContext());
-                String displayText = controller.extractProviderCategoryWithServices(service.getCategory());
-                categoryBadge.setText(displayText);
-                categoryBadge.setVisibility(View.VISIBLE);
-            } else {
-                categoryBadge.setVisibility(View.GONE);
-            }
-
-            // Verified badge hidden for now  (can enable when Firestore has "verified: true")
-
-            verifiedBadge.setVisibility(View.GONE);
-
-            // Load image using Glide (async, cached)
-            if (service.getImageUrl() != null && !service.getImageUrl().isEmpty()) {
-                Glide.with(itemView.getContext())
-                        .load(service.getImageUrl())
-                        .placeholder(R.drawable.ic_service_placeholder) // shown while loading
-                        .error(R.drawable.ic_service_placeholder)       // shown if download fails
-                        .centerCrop()
-                        .into(serviceImage);
-            } else {
-                serviceImage.setImageResource(R.drawable.ic_service_placeholder);
-            }
 
-            // User tapped the card
-            itemView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onServiceClick(item);
-                }
-            });
+            // Categories the provider picked services in, localized
+            String categoryBadge = service.getParsedCategory().isEmpty()
+                    ? null : translator.formatLocalized(service.getParsedCategory().primary());
+
+            return new CardDisplay(
+                    provider.getId(),
+                    service.getServiceTitle(),
+                    emptyToNull(service.getPricing()),
+                    context.getString(R.string.provider_prefix, provider.getFullName()),
+                    location,
+                    // Availability (Mon,Tue → local)
+                    isEmpty(service.getAvailability())
+                            ? null : translator.formatAvailabilityForDisplay(service.getAvailability()),
+                    categoryBadge,
+                    emptyToNull(service.getCardImageUrl()));
         }
 
         // Try to extract city part from address "Street, City, State"
 
-        private String extractCity(String address) {
+        private static String extractCity(String address) {
             if (address == null || address.isEmpty()) {
                 return "Location TBD";
             }
@@ -284,24 +421,33 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
             return address;
         }
 
-        // Convert "Mon, Tue, Wed" => "Mon/Tue/Wed"
+        private static boolean isEmpty(String value) {
+            return value == null || value.isEmpty();
+        }
+
+        private static String emptyToNull(String value) {
+            return isEmpty(value) ? null : value;
+        }
 
-        private String formatAvailability(String availability) {
-            return availability.replace(", ", "/");
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CardDisplay)) return false;
+            CardDisplay other = (CardDisplay) o;
+            return Objects.equals(providerId, other.providerId)
+                    && Objects.equals(title, other.title)
+                    && Objects.equals(priceLabel, other.priceLabel)
+                    && Objects.equals(providerLabel, other.providerLabel)
+                    && Objects.equals(location, other.location)
+                    && Objects.equals(availability, other.availability)
+                    && Objects.equals(categoryBadge, other.categoryBadge)
+                    && Objects.equals(imageUrl, other.imageUrl);
         }
 
-        /* *******************************************************************************
-         * Service category may look like:
-         *   "Home: Plumbing, Electrical | Automotive: Tire Change"       "
-         **************************************************************************************/
-        private String extractFirstCategory(String category) {
-            if (category.contains(":")) {
-                return category.split(":")[0].trim();
-            }
-            if (category.contains("|")) {
-                return category.split("\\|")[0].trim();
-            }
-            return category;
+        @Override
+        public int hashCode() {
+            return Objects.hash(providerId, title, priceLabel, providerLabel,
+                    location, availability, categoryBadge, imageUrl);
         }
     }
 
@@ -313,11 +459,17 @@ public class ServiceCardAdapter extends RecyclerView.Adapter<ServiceCardAdapter.
     public static class ServiceItem {
         public final Provider provider;
         public final ProviderService service;
+        CardDisplay display;   // set once by the adapter before the item is shown
 
         public ServiceItem(Provider provider, ProviderService service) {
             this.provider = provider;
             this.service = service;
         }
+
+        // Identity of the card across lists: providers/{providerId}/services/{serviceId}
+        public String key() {
+            return provider.getId() + "/" + service.getId();
+        }
     }
 
     // =========================================================
@@ -0,0 +1,170 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.tasks.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import edu.sjsu.android.servicesfinder.database.ServiceSearchRanker;
+import edu.sjsu.android.servicesfinder.model.Provider;
+import edu.sjsu.android.servicesfinder.model.ProviderService;
+
+/**
+ * SERVICESEARCHENGINE
+ * Narrows the last local full-text search results in memory while the query grows.
+ * - the FTS index (ProviderServiceRepository) stays the only place results come from;
+ *   setResults() keeps the hits of the last FTS query, tokenized once: title,
+ *   description, category (English and localized), service area and provider name
+ * - when the new query only extends that one (more characters typed), canNarrow() is true
+ *   and narrow() re-checks just those hits with the same rule as the index (every query
+ *   word a prefix of a word in one of the fields), keeping the index's ranking order
+ * - clear() forgets the hits (the list was reloaded, or the query was cleared)
+ * - all work runs on one background thread, shared by every engine; a search whose token
+ *   is cancelled (the caller started a newer one, see CancellationScope) stops early and
+ *   is never delivered
+ * Results hold copies of the services, so callers may localize them freely.
+ */
+public class ServiceSearchEngine {
+
+    private static final int TITLE = 0, DESCRIPTION = 1, CATEGORY = 2, AREA = 3, PROVIDER = 4;
+    private static final int CANCEL_CHECK_INTERVAL = 64;
+    private static final String TAG = "ServiceSearchEngine";
+
+    private final Context context;
+    // One thread for every engine: an engine lives as long as its activity, the thread
+    // as long as the process (a per-engine thread leaked on each rotation)
+    private static final ExecutorService EXECUTOR = AppExecutors.newSerialExecutor("sf-search");
+    private String resultsQueryKey;   // main thread: query whose hits (or a subset) are held
+
+    // Worker thread only; in ranking order
+    private List<Entry> entries = new ArrayList<>();
+
+    public ServiceSearchEngine(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    // =========================================================
+    // RESULTS OF THE LAST INDEX QUERY
+    // =========================================================
+    // The strings are captured here, the tokenizing happens in the background.
+    public void setResults(String query, Map<Provider, List<ProviderService>> results) {
+        List<Entry> snapshot = new ArrayList<>();
+        for (Map.Entry<Provider, List<ProviderService>> entry : results.entrySet()) {
+            for (ProviderService service : entry.getValue()) {
+                snapshot.add(new Entry(entry.getKey(), service.copy()));
+            }
+        }
+        resultsQueryKey = queryKey(query);
+
+        EXECUTOR.execute(() -> {
+            FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
+            for (Entry entry : snapshot) {
+                entry.tokenize(translator);
+            }
+            entries = snapshot;
+        });
+    }
+
+    public void clear() {
+        resultsQueryKey = null;
+        EXECUTOR.execute(() -> entries = new ArrayList<>());
+    }
+
+    public boolean canNarrow(String query) {
+        return resultsQueryKey != null && queryKey(query).startsWith(resultsQueryKey);
+    }
+
+    // =========================================================
+    // NARROW (only when canNarrow(query))
+    // =========================================================
+    public void narrow(String query, CancellationToken token, OnSearchCompleteListener listener) {
+        final List<String> queryTokens = ServiceSearchRanker.tokenize(query);
+        // Held hits stay a superset of this query's matches even if this pass is cancelled
+        resultsQueryKey = String.join(" ", queryTokens);
+
+        Async.deliver(Async.run(EXECUTOR, token, () -> {
+            List<Entry> matched = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                if (i % CANCEL_CHECK_INTERVAL == 0 && token.isCancellationRequested()) return null;
+
+                Entry entry = entries.get(i);
+                if (entry.matches(queryTokens)) matched.add(entry);
+            }
+            entries = matched;
+
+            Map<Provider, List<ProviderService>> results = new LinkedHashMap<>();
+            for (Entry entry : matched) {
+                List<ProviderService> list = results.get(entry.provider);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    results.put(entry.provider, list);
+                }
+                list.add(entry.service.copy());
+            }
+            return results;
+        }), token, listener::onSearchComplete, e -> Log.e(TAG, "Search failed", e));
+    }
+
+    private static String queryKey(String query) {
+        return String.join(" ", ServiceSearchRanker.tokenize(query));
+    }
+
+    // =========================================================
+    // RESULT ENTRY
+    // =========================================================
+    private static final class Entry {
+        final Provider provider;
+        final ProviderService service;
+        final List<List<String>> fieldTokens = new ArrayList<>();
+
+        Entry(Provider provider, ProviderService service) {
+            this.provider = provider;
+            this.service = service;
+        }
+
+        void tokenize(FirestoreStringTranslator translator) {
+            String category = service.getCategory();
+            String localizedCategory = category == null ? null : translator.translateCategory(category);
+
+            fieldTokens.add(TITLE, ServiceSearchRanker.tokenize(service.getServiceTitle()));
+            fieldTokens.add(DESCRIPTION, ServiceSearchRanker.tokenize(service.getDescription()));
+            List<String> categoryTokens = ServiceSearchRanker.tokenize(category);
+            categoryTokens.addAll(ServiceSearchRanker.tokenize(localizedCategory));
+            fieldTokens.add(CATEGORY, categoryTokens);
+            fieldTokens.add(AREA, ServiceSearchRanker.tokenize(service.getServiceArea()));
+            fieldTokens.add(PROVIDER, ServiceSearchRanker.tokenize(provider.getFullName()));
+        }
+
+        // Every query word must prefix a word in some field
+        boolean matches(List<String> queryTokens) {
+            if (queryTokens.isEmpty()) return false;
+
+            for (String queryToken : queryTokens) {
+                if (!anyFieldHasPrefix(queryToken)) return false;
+            }
+            return true;
+        }
+
+        private boolean anyFieldHasPrefix(String queryToken) {
+            for (List<String> tokens : fieldTokens) {
+                for (String token : tokens) {
+                    if (token.startsWith(queryToken)) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // =========================================================
+    // CALLBACK INTERFACE
+    // =========================================================
+    public interface OnSearchCompleteListener {
+        void onSearchComplete(Map<Provider, List<ProviderService>> results);
+    }
+}
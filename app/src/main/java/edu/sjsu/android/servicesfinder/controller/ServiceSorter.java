@@ -0,0 +1,263 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.firebase.firestore.DocumentChange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import edu.sjsu.android.servicesfinder.database.ProviderServiceDatabase;
+import edu.sjsu.android.servicesfinder.database.ReviewDatabase;
+import edu.sjsu.android.servicesfinder.model.Provider;
+import edu.sjsu.android.servicesfinder.model.ProviderService;
+
+/**
+ * SERVICESORTER
+ * Sorts home-screen cards on a background thread.
+ * - the sort keys (numeric price, timestamp) are read once per item into primitive arrays,
+ *   so comparators only compare numbers; ratings come from ProviderRatingCache
+ * - for the result set last passed to sort(), the sorted order of every SortOption is kept
+ *   as a permutation, so switching back and forth between sort orders costs no re-sort
+ *   (the rating order is kept only while the ratings it was built from are unchanged)
+ * - a newer sort() makes any earlier one still pending never deliver
+ * - sortPage() sorts one feed page; pages are delivered in the order they were passed
+ * - mergeChanges() applies live service changes to a list off the main thread
+ * Sorts are stable: equal keys keep the order the items came in.
+ */
+public class ServiceSorter {
+
+    public enum SortOption {
+        RATING, PRICE_LOW_TO_HIGH, PRICE_HIGH_TO_LOW, MOST_RECENT, POPULAR
+    }
+
+    private static final String TAG = "ServiceSorter";
+
+    // One thread for every sorter, like ServiceSearchEngine: a sorter lives as long as its
+    // activity, the thread as long as the process
+    private static final ExecutorService EXECUTOR = AppExecutors.newSerialExecutor("sf-sort");
+    private final CancellationScope sorts = new CancellationScope();
+    private final ProviderRatingCache ratingCache = ProviderRatingCache.get();
+
+    // Main thread: the result set the worker holds keys for
+    private List<ServiceCardAdapter.ServiceItem> keyedSource;
+    private List<ServiceCardAdapter.ServiceItem> keyedSnapshot;
+
+    // Sort thread only
+    private SortKeys keys;
+    private final Map<SortOption, int[]> permutations = new EnumMap<>(SortOption.class);
+    private float[] ratingsOfRatingOrder;
+
+    // =========================================================
+    // SORT (cached per result set)
+    // =========================================================
+    // Passing the same list object again reuses its keys and cached orders
+    public void sort(List<ServiceCardAdapter.ServiceItem> items, SortOption option, OnSortedListener listener) {
+        final CancellationToken token = sorts.next();
+        final boolean sameSource = items == keyedSource;
+        if (!sameSource) {
+            keyedSource = items;
+            keyedSnapshot = new ArrayList<>(items);
+        }
+        final List<ServiceCardAdapter.ServiceItem> snapshot = keyedSnapshot;
+        final float[] ratings = option == SortOption.RATING ? readRatings(snapshot) : null;
+
+        Async.deliver(Async.run(EXECUTOR, token, () -> {
+            if (!sameSource || keys == null || keys.items != snapshot) {
+                keys = new SortKeys(snapshot);
+                permutations.clear();
+                ratingsOfRatingOrder = null;
+            }
+
+            int[] order = permutations.get(option);
+            if (order != null && option == SortOption.RATING && !Arrays.equals(ratings, ratingsOfRatingOrder)) {
+                order = null;   // ratings changed since that order was built
+            }
+            if (order == null) {
+                order = keys.order(option, ratings);
+                permutations.put(option, order);
+                if (option == SortOption.RATING) ratingsOfRatingOrder = ratings;
+            }
+
+            return keys.apply(order);
+        }), token, listener::onSorted, e -> Log.e(TAG, "Sort failed", e));
+    }
+
+    // =========================================================
+    // SORT ONE FEED PAGE (not cached, never superseded)
+    // =========================================================
+    public void sortPage(List<ServiceCardAdapter.ServiceItem> page, SortOption option, OnSortedListener listener) {
+        final List<ServiceCardAdapter.ServiceItem> snapshot = new ArrayList<>(page);
+        final float[] ratings = option == SortOption.RATING ? readRatings(snapshot) : null;
+
+        Async.deliver(Async.run(EXECUTOR, Async.NOT_CANCELLABLE, () -> {
+            SortKeys pageKeys = new SortKeys(snapshot);
+            return pageKeys.apply(pageKeys.order(option, ratings));
+        }), Async.NOT_CANCELLABLE, listener::onSorted, e -> Log.e(TAG, "Page sort failed", e));
+    }
+
+    // =========================================================
+    // MERGE LIVE CHANGES (see HomeController.startLiveUpdates())
+    // =========================================================
+    // Delivers a copy of items with the changes applied, or null when none of them touches
+    // this list. Cards the admission refuses are left out (or dropped); with fullSnapshot,
+    // so are the cards at or after since that the changes do not list. A non-null feedOrder
+    // (MOST_RECENT / POPULAR, which need no ratings) sorts the result in the same pass.
+    public void mergeChanges(List<ServiceCardAdapter.ServiceItem> items,
+                             List<ProviderServiceDatabase.ServiceChange> changes,
+                             boolean fullSnapshot, long since, Admission admission,
+                             SortOption feedOrder, OnSortedListener listener) {
+        final List<ServiceCardAdapter.ServiceItem> snapshot = new ArrayList<>(items);
+
+        Async.deliver(Async.run(EXECUTOR, Async.NOT_CANCELLABLE, () -> {
+            Map<String, ProviderServiceDatabase.ServiceChange> byKey = new HashMap<>();
+            for (ProviderServiceDatabase.ServiceChange change : changes) {
+                byKey.put(change.providerId + "/" + change.service.getId(), change);
+            }
+
+            List<ServiceCardAdapter.ServiceItem> merged = new ArrayList<>(snapshot.size() + changes.size());
+            boolean touched = false;
+            for (ServiceCardAdapter.ServiceItem item : snapshot) {
+                ProviderServiceDatabase.ServiceChange change = byKey.remove(item.key());
+                if (change == null) {
+                    if (fullSnapshot && item.service.getTimestamp() >= since) {
+                        touched = true;   // gone from the window
+                    } else {
+                        merged.add(item);
+                    }
+                    continue;
+                }
+                touched = true;
+                if (change.type != DocumentChange.Type.REMOVED && admission.admits(change.service, true)) {
+                    merged.add(new ServiceCardAdapter.ServiceItem(change.provider, change.service));
+                }
+            }
+            // What is left was not on the list
+            for (ProviderServiceDatabase.ServiceChange change : byKey.values()) {
+                if (change.type != DocumentChange.Type.REMOVED && admission.admits(change.service, false)) {
+                    merged.add(new ServiceCardAdapter.ServiceItem(change.provider, change.service));
+                    touched = true;
+                }
+            }
+            if (!touched) return null;
+
+            if (feedOrder == null) return merged;
+            SortKeys mergedKeys = new SortKeys(merged);
+            return mergedKeys.apply(mergedKeys.order(feedOrder, null));
+        }), Async.NOT_CANCELLABLE, listener::onSorted, e -> Log.e(TAG, "Merging live changes failed", e));
+    }
+
+    // Drops any sort() still pending (e.g. the list is about to be replaced)
+    public void cancel() {
+        sorts.cancel();
+    }
+
+    // Ratings are read on the main thread (ProviderRatingCache is main-thread only);
+    // unresolved providers are asked for and count as 0 until they arrive
+    private float[] readRatings(List<ServiceCardAdapter.ServiceItem> items) {
+        Set<Provider> providers = new HashSet<>();
+        for (ServiceCardAdapter.ServiceItem item : items) {
+            providers.add(item.provider);
+        }
+        ratingCache.prefetchProviders(providers);
+
+        float[] ratings = new float[items.size()];
+        for (int i = 0; i < ratings.length; i++) {
+            ReviewDatabase.RatingSummary summary = ratingCache.getCached(items.get(i).provider.getId());
+            ratings[i] = summary != null ? summary.averageRating : 0f;
+        }
+        return ratings;
+    }
+
+    // =========================================================
+    // SORT KEYS (worker thread)
+    // =========================================================
+    private static final class SortKeys {
+        final List<ServiceCardAdapter.ServiceItem> items;
+        final double[] prices;
+        final long[] timestamps;
+
+        SortKeys(List<ServiceCardAdapter.ServiceItem> items) {
+            this.items = items;
+            prices = new double[items.size()];
+            timestamps = new long[items.size()];
+            for (int i = 0; i < prices.length; i++) {
+                prices[i] = extractPrice(items.get(i).service.getPricing());
+                timestamps[i] = items.get(i).service.getTimestamp();
+            }
+        }
+
+        int[] order(SortOption option, float[] ratings) {
+            Integer[] indices = new Integer[items.size()];
+            for (int i = 0; i < indices.length; i++) indices[i] = i;
+
+            switch (option) {
+                case PRICE_LOW_TO_HIGH:
+                    Arrays.sort(indices, (a, b) -> Double.compare(prices[a], prices[b]));
+                    break;
+                case PRICE_HIGH_TO_LOW:
+                    Arrays.sort(indices, (a, b) -> Double.compare(prices[b], prices[a]));
+                    break;
+                case RATING:
+                    Arrays.sort(indices, (a, b) -> Float.compare(ratings[b], ratings[a]));
+                    break;
+                case MOST_RECENT:
+                case POPULAR:   // timestamp as proxy for now
+                default:
+                    Arrays.sort(indices, (a, b) -> Long.compare(timestamps[b], timestamps[a]));
+                    break;
+            }
+
+            int[] order = new int[indices.length];
+            for (int i = 0; i < order.length; i++) order[i] = indices[i];
+            return order;
+        }
+
+        List<ServiceCardAdapter.ServiceItem> apply(int[] order) {
+            List<ServiceCardAdapter.ServiceItem> sorted = new ArrayList<>(order.length);
+            for (int index : order) {
+                sorted.add(items.get(index));
+            }
+            return sorted;
+        }
+
+        // Extract numeric price from pricing string (e.g., "$50/hour" -> 50.0)
+        private static double extractPrice(String pricing) {
+            if (pricing == null || pricing.isEmpty()) {
+                return Double.MAX_VALUE; // Put items without price at the end
+            }
+
+            try {
+                // Remove currency symbols and extract first number
+                String numberStr = pricing.replaceAll("[^0-9.]", "");
+                if (!numberStr.isEmpty()) {
+                    return Double.parseDouble(numberStr);
+                }
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "Failed to parse price: " + pricing);
+            }
+
+            return Double.MAX_VALUE;
+        }
+    }
+
+    // =========================================================
+    // CALLBACK INTERFACE
+    // =========================================================
+    public interface OnSortedListener {
+        void onSorted(List<ServiceCardAdapter.ServiceItem> sorted);
+    }
+
+    // Whether a changed service belongs in the list (called on the sort thread)
+    public interface Admission {
+        boolean admits(ProviderService service, boolean shown);
+    }
+}
@@ -0,0 +1,27 @@
+package edu.sjsu.android.servicesfinder.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * STABLEIDS
+ * Maps the string keys of adapter rows (Firestore document IDs) to the long IDs
+ * RecyclerView's stable-ID mode needs. Each key keeps its number for the adapter's
+ * lifetime, so a row that moves or rebinds is still recognized as the same row.
+ * Counting instead of hashing the key means two rows can never collide.
+ * Main thread only.
+ */
+final class StableIds {
+
+    private final Map<String, Long> ids = new HashMap<>();
+    private long next = 0;
+
+    long idOf(String key) {
+        Long id = ids.get(key);
+        if (id == null) {
+            id = next++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,47 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+import edu.sjsu.android.servicesfinder.model.Provider;
+import edu.sjsu.android.servicesfinder.model.ProviderService;
+import edu.sjsu.android.servicesfinder.model.ServiceSearchEntry;
+
+//******************************************************************************************
+// * Local Room database: on-disk copy of the providers and services shown on the home screen,
+// * plus the full-text search index built from them (service_search)
+// * Firestore stays the source of truth; this is only a cache, so schema changes simply
+// * rebuild it (fallbackToDestructiveMigration).
+//******************************************************************************************
+@Database(entities = {Provider.class, ProviderService.class, ServiceSearchEntry.class},
+        version = 3, exportSchema = false)
+public abstract class AppDatabase extends RoomDatabase {
+    private static final String DATABASE_NAME = "services_finder_cache.db";
+    private static volatile AppDatabase instance;
+
+    public abstract ProviderDao providerDao();
+
+    public abstract ProviderServiceDao providerServiceDao();
+
+    public abstract ServiceSearchDao serviceSearchDao();
+
+    //******************************************************************************************
+    // Get singleton Room instance
+    //******************************************************************************************
+    public static AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                                    AppDatabase.class, DATABASE_NAME)
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,142 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/* ***********************************************************************************************
+ * Bulk Firestore mutations
+ * Queue set/update/delete operations, then commit() groups them into WriteBatch commits of
+ * at most MAX_OPS_PER_BATCH operations and keeps up to maxConcurrentBatches of them in flight.
+ *   - onProgress() after every committed batch (operations committed so far / total)
+ *   - onComplete() once every batch has committed
+ *   - onError() after the first failed batch: no further batches are started, and the call
+ *     waits for those still in flight. Batches are atomic, so committedOps is exactly what
+ *     reached Firestore.
+ * Callbacks arrive on the main thread. A writer is meant to be committed once.
+ *************************************************************************************************/
+public class BatchWriter {
+    public static final int MAX_OPS_PER_BATCH = 500;   // Firestore limit per WriteBatch
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 3;
+
+    private final FirebaseFirestore db;
+    private final int maxConcurrentBatches;
+    private final List<Operation> operations = new ArrayList<>();
+
+    // Commit state (main thread)
+    private List<List<Operation>> pendingBatches;
+    private OnBatchWriteListener listener;
+    private int inFlight = 0;
+    private int committedOps = 0;
+    private Exception failure;   // first failed batch
+
+    public BatchWriter(FirebaseFirestore db) {
+        this(db, DEFAULT_MAX_CONCURRENT_BATCHES);
+    }
+
+    public BatchWriter(FirebaseFirestore db, int maxConcurrentBatches) {
+        this.db = db;
+        this.maxConcurrentBatches = Math.max(1, maxConcurrentBatches);
+    }
+
+    // =========================================================
+    // QUEUE OPERATIONS
+    // =========================================================
+    public BatchWriter set(DocumentReference ref, Map<String, Object> data) {
+        operations.add(batch -> batch.set(ref, data));
+        return this;
+    }
+
+    public BatchWriter update(DocumentReference ref, Map<String, Object> updates) {
+        operations.add(batch -> batch.update(ref, updates));
+        return this;
+    }
+
+    public BatchWriter delete(DocumentReference ref) {
+        operations.add(batch -> batch.delete(ref));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    // =========================================================
+    // COMMIT
+    // =========================================================
+    public void commit(OnBatchWriteListener listener) {
+        this.listener = listener;
+        pendingBatches = new ArrayList<>();
+        for (int start = 0; start < operations.size(); start += MAX_OPS_PER_BATCH) {
+            pendingBatches.add(operations.subList(start, Math.min(start + MAX_OPS_PER_BATCH, operations.size())));
+        }
+
+        if (pendingBatches.isEmpty()) {
+            listener.onComplete(0);
+            return;
+        }
+        while (inFlight < maxConcurrentBatches && !pendingBatches.isEmpty()) {
+            commitNext();
+        }
+    }
+
+    private void commitNext() {
+        List<Operation> ops = pendingBatches.remove(0);
+        WriteBatch batch = db.batch();
+        for (Operation op : ops) {
+            op.addTo(batch);
+        }
+
+        inFlight++;
+        batch.commit()
+                .addOnSuccessListener(unused -> {
+                    inFlight--;
+                    committedOps += ops.size();
+
+                    if (failure != null) {
+                        finishWithError();
+                        return;
+                    }
+                    listener.onProgress(committedOps, operations.size());
+
+                    if (!pendingBatches.isEmpty()) {
+                        commitNext();
+                    } else if (inFlight == 0) {
+                        listener.onComplete(committedOps);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    inFlight--;
+                    if (failure == null) {
+                        failure = e;
+                        pendingBatches.clear();
+                    }
+                    finishWithError();
+                });
+    }
+
+    // Reported once the batches already in flight have settled, so the count is final
+    private void finishWithError() {
+        if (inFlight == 0) {
+            listener.onError(failure, committedOps);
+        }
+    }
+
+    private interface Operation {
+        void addTo(WriteBatch batch);
+    }
+
+    // =========================================================
+    // CALLBACK INTERFACE
+    // =========================================================
+    public interface OnBatchWriteListener {
+        void onProgress(int committedOps, int totalOps);
+        void onComplete(int totalOps);
+        // committedOps: operations in the batches that did commit
+        void onError(Exception e, int committedOps);
+    }
+}
@@ -3,6 +3,7 @@ package edu.sjsu.android.servicesfinder.database;
 import android.content.Context;
 
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.util.ArrayList;
@@ -27,6 +28,7 @@ import edu.sjsu.android.servicesfinder.model.Customer;
  */
 public class CustomerDatabase {
     private static final String COLLECTION_CUSTOMERS = "customers";
+    private static final String FIELD_FAVORITE_PROVIDERS = "favoriteProviders";
     private final FirebaseFirestore db;
     private final Context context;
 
@@ -132,43 +134,33 @@ public class CustomerDatabase {
 
     /**
      * Add a provider to customer's favorites
+     * Single arrayUnion write: no read first, and concurrent changes are not overwritten
      */
     public void addFavoriteProvider(String customerId, String providerId, OnCustomerOperationListener listener) {
         db.collection(COLLECTION_CUSTOMERS)
                 .document(customerId)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    Customer customer = documentSnapshotToCustomer(doc);
-                    customer.addFavoriteProvider(providerId);
-
-                    Map<String, Object> updates = new HashMap<>();
-                    updates.put("favoriteProviders", customer.getFavoriteProviders());
-
-                    updateCustomerFields(customerId, updates, listener);
+                .update(FIELD_FAVORITE_PROVIDERS, FieldValue.arrayUnion(providerId))
+                .addOnSuccessListener(aVoid -> {
+                    listener.onSuccess(context.getString(R.string.success_favorite_added));
                 })
                 .addOnFailureListener(e -> {
-                    listener.onError(e.getMessage());
+                    listener.onError(context.getString(R.string.error_update_failed, e.getMessage()));
                 });
     }
 
     /**
      * Remove a provider from customer's favorites
+     * Single arrayRemove write (see addFavoriteProvider)
      */
     public void removeFavoriteProvider(String customerId, String providerId, OnCustomerOperationListener listener) {
         db.collection(COLLECTION_CUSTOMERS)
                 .document(customerId)
-                .get()
-                .addOnSuccessListener(doc -> {
-                    Customer customer = documentSnapshotToCustomer(doc);
-                    customer.removeFavoriteProvider(providerId);
-
-                    Map<String, Object> updates = new HashMap<>();
-                    updates.put("favoriteProviders", customer.getFavoriteProviders());
-
-                    updateCustomerFields(customerId, updates, listener);
+                .update(FIELD_FAVORITE_PROVIDERS, FieldValue.arrayRemove(providerId))
+                .addOnSuccessListener(aVoid -> {
+                    listener.onSuccess(context.getString(R.string.success_favorite_removed));
                 })
                 .addOnFailureListener(e -> {
-                    listener.onError(e.getMessage());
+                    listener.onError(context.getString(R.string.error_update_failed, e.getMessage()));
                 });
     }
 
@@ -17,6 +17,8 @@ import edu.sjsu.android.servicesfinder.R;
 //******************************************************************************************
 public class FirestoreHelper {
     public static final String COLLECTION_PROVIDERS = "providers";
+    public static final String COLLECTION_SERVICES = "services";   // subcollection of each provider
+    public static final int WHERE_IN_LIMIT = 30;                    // Firestore max values per whereIn
     private static FirebaseFirestore instance;
 
     //******************************************************************************************
@@ -0,0 +1,567 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import edu.sjsu.android.servicesfinder.R;
+import edu.sjsu.android.servicesfinder.controller.AppExecutors;
+import edu.sjsu.android.servicesfinder.controller.RefreshPolicy;
+import edu.sjsu.android.servicesfinder.util.ProToast;
+
+/* ***********************************************************************************************
+ * Persistent background upload queue for service images
+ *
+ * The service is saved first (without its new image); enqueue() then:
+ *  - copies the picked image into app storage and records a job in SharedPreferences (JSON)
+ *    before reporting back, so the caller may finish right away: the job survives process
+ *    death and no longer needs the picker's URI grant
+ *  - when the job runs, the copy is compressed into its three variants (StorageHelper), kept
+ *    in app storage; the job holds provider, services to patch, per-variant resumable session
+ *    URI and download URL
+ * Jobs run one at a time with putFile(); the session URI is saved as soon as Storage hands it
+ * out, so an interrupted upload continues where it stopped instead of starting over.
+ * Failures retry with exponential backoff. When all three variants are uploaded, each
+ * waiting service document gets imageUrl / mediumImageUrl / thumbnailUrl patched in.
+ * A job given up on (unreadable image, MAX_ATTEMPTS failures) is reported with a toast.
+ * Objects are named by content hash (StorageHelper.variantPath):
+ *  - the same picture queued again (same hash, same provider) joins the pending job
+ *  - a variant already in Storage is not uploaded again, its download URL is reused
+ *  - sweepOrphans() deletes the provider's images no service points to anymore
+ * All state is touched on the main thread only.
+ *************************************************************************************************/
+public final class ImageUploadQueue {
+    private static final String TAG = "ImageUploadQueue";
+    private static final String PREF = "services_finder_uploads";
+    private static final String KEY_JOBS = "jobs";
+    private static final String KEY_LAST_SWEEP = "last_sweep_";   // + providerId
+    private static final String QUEUE_DIR = "upload_queue";
+
+    private static final long BASE_BACKOFF_MS = 2_000;
+    private static final long MAX_BACKOFF_MS = 10 * 60_000;
+    private static final int MAX_ATTEMPTS = 12;   // then the job is dropped
+    private static final long SWEEP_INTERVAL_MS = 24 * 60 * 60_000L;
+
+    private static ImageUploadQueue INSTANCE;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final StorageReference storageRef = FirebaseStorage.getInstance().getReference();
+    private final FirebaseFirestore db = FirestoreHelper.getInstance();
+    private final List<Job> jobs = new ArrayList<>();
+    private boolean running = false;
+    private final Runnable retry = this::processNext;
+
+    private ImageUploadQueue(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static ImageUploadQueue get(Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new ImageUploadQueue(context);
+        }
+        return INSTANCE;
+    }
+
+    // =========================================================
+    // PUBLIC API
+    // =========================================================
+    // Picks up jobs left over from an earlier run (app start, screen open)
+    public void resume() {
+        processNext();
+    }
+
+    // Uploads imageUri in the background, then sets it as the image of the given service.
+    // The listener hears back once the image is copied and the job saved (or could not be).
+    public void enqueue(Uri imageUri, String providerId, String serviceId, OnEnqueueListener listener) {
+        AppExecutors.imageIO().execute(() -> {
+            File source = queueFile("src_" + UUID.randomUUID());
+            try (InputStream in = context.getContentResolver().openInputStream(imageUri)) {
+                if (in == null) throw new IOException("No stream for " + imageUri);
+                writeFile(source, in);
+            } catch (IOException | SecurityException e) {
+                Log.e(TAG, "Could not copy image for upload", e);
+                if (source.exists() && !source.delete()) Log.w(TAG, "Could not delete " + source);
+                AppExecutors.mainThread().execute(listener::onEnqueueFailed);
+                return;
+            }
+
+            AppExecutors.mainThread().execute(() -> {
+                Job job = new Job(null, providerId);
+                job.sourceFile = source.getName();
+                job.serviceIds.add(serviceId);
+                jobs.add(job);
+                persist(true);
+                listener.onEnqueued();
+                processNext();
+            });
+        });
+    }
+
+    // =========================================================
+    // PREPARING (copy -> compressed variants, named by hash)
+    // =========================================================
+    private void prepare(Job job) {
+        File source = job.sourceFile != null ? queueFile(job.sourceFile) : null;
+        if (source == null || !source.exists()) {
+            giveUp(job, "Copied image is gone, dropping upload", null);
+            return;
+        }
+
+        AppExecutors.imageIO().execute(() -> {
+            try {
+                StorageHelper.ImageVariants variants = StorageHelper.compressImage(context, Uri.fromFile(source));
+                String hash = sha256Hex(variants.get(StorageHelper.VARIANT_ORIGINAL));
+
+                for (int variant = 0; variant < StorageHelper.VARIANT_COUNT; variant++) {
+                    File file = variantFile(hash, variant);
+                    if (!file.exists()) writeFile(file, variants.get(variant));
+                }
+                AppExecutors.mainThread().execute(() -> onPrepared(job, hash));
+            } catch (Exception e) {
+                // The copy is on disk; an image that does not decode will not decode next time either
+                AppExecutors.mainThread().execute(() -> giveUp(job, "Could not prepare image for upload", e));
+            }
+        });
+    }
+
+    // The copy is deleted only once the job no longer needs it on disk
+    private void onPrepared(Job job, String hash) {
+        for (Job other : jobs) {
+            if (other != job && hash.equals(other.hash) && other.providerId.equals(job.providerId)) {
+                // Same picture already on its way: patch these services too when it lands
+                for (String serviceId : job.serviceIds) {
+                    if (!other.serviceIds.contains(serviceId)) other.serviceIds.add(serviceId);
+                }
+                finishJob(job);
+                return;
+            }
+        }
+
+        job.hash = hash;
+        persist(true);
+        deleteSource(job);   // the stale name is saved over on the next persist()
+        uploadVariant(job, 0);
+    }
+
+    // =========================================================
+    // PROCESSING (one job, one variant at a time)
+    // =========================================================
+    private void processNext() {
+        handler.removeCallbacks(retry);
+        if (running || jobs.isEmpty()) return;
+
+        running = true;
+        Job job = jobs.get(0);
+        if (job.hash == null) {
+            prepare(job);
+        } else {
+            uploadVariant(job, 0);
+        }
+    }
+
+    private void uploadVariant(Job job, int variant) {
+        if (variant == StorageHelper.VARIANT_COUNT) {
+            patchServices(job);
+            return;
+        }
+        if (job.downloadUrls[variant] != null) {
+            uploadVariant(job, variant + 1);
+            return;
+        }
+
+        File file = variantFile(job.hash, variant);
+        if (!file.exists()) {
+            giveUp(job, "Queued image file is gone, dropping upload " + job.hash, null);
+            return;
+        }
+
+        StorageReference ref = storageRef.child(StorageHelper.variantPath(job.providerId, job.hash, variant));
+        if (job.sessionUris[variant] != null) {
+            upload(job, variant, ref, file);
+            return;
+        }
+
+        // Content-addressed: if this variant is already stored, reuse it instead of uploading
+        ref.getDownloadUrl()
+                .addOnSuccessListener(downloadUri -> onVariantUploaded(job, variant, downloadUri))
+                .addOnFailureListener(e -> {
+                    if (e instanceof StorageException
+                            && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                        upload(job, variant, ref, file);
+                    } else {
+                        retryLater(job, e);
+                    }
+                });
+    }
+
+    private void upload(Job job, int variant, StorageReference ref, File file) {
+        StorageMetadata metadata = new StorageMetadata.Builder()
+                .setContentType("image/webp")
+                .build();
+        String session = job.sessionUris[variant];
+        UploadTask uploadTask = session != null
+                ? ref.putFile(Uri.fromFile(file), metadata, Uri.parse(session))
+                : ref.putFile(Uri.fromFile(file), metadata);
+
+        uploadTask.addOnProgressListener(snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && !sessionUri.toString().equals(job.sessionUris[variant])) {
+                job.sessionUris[variant] = sessionUri.toString();
+                persist();
+            }
+        });
+
+        uploadTask.continueWithTask(task -> {
+                    if (!task.isSuccessful()) throw task.getException();
+                    return ref.getDownloadUrl();
+                })
+                .addOnSuccessListener(downloadUri -> onVariantUploaded(job, variant, downloadUri))
+                .addOnFailureListener(e -> {
+                    // A session that cannot be resumed (expired, rejected) is started over next time
+                    if (!(e instanceof StorageException) || !((StorageException) e).getIsRecoverableException()) {
+                        job.sessionUris[variant] = null;
+                    }
+                    retryLater(job, e);
+                });
+    }
+
+    private void onVariantUploaded(Job job, int variant, Uri downloadUri) {
+        job.downloadUrls[variant] = downloadUri.toString();
+        job.sessionUris[variant] = null;
+        persist();
+        uploadVariant(job, variant + 1);
+    }
+
+    private void patchServices(Job job) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("imageUrl", job.downloadUrls[StorageHelper.VARIANT_ORIGINAL]);
+        updates.put("mediumImageUrl", job.downloadUrls[StorageHelper.VARIANT_MEDIUM]);
+        updates.put("thumbnailUrl", job.downloadUrls[StorageHelper.VARIANT_THUMBNAIL]);
+
+        List<Task<Void>> patches = new ArrayList<>();
+        for (String serviceId : job.serviceIds) {
+            patches.add(db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                    .document(job.providerId)
+                    .collection(FirestoreHelper.COLLECTION_SERVICES)
+                    .document(serviceId)
+                    .update(updates));
+        }
+
+        Tasks.whenAllComplete(patches).addOnSuccessListener(results -> {
+            for (Task<?> patch : results) {
+                Exception e = patch.getException();
+                // A service deleted meanwhile has nothing left to patch
+                if (e != null && !(e instanceof FirebaseFirestoreException
+                        && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND)) {
+                    retryLater(job, e);
+                    return;
+                }
+            }
+            Log.i(TAG, "Image " + job.hash + " uploaded for " + job.serviceIds.size() + " service(s)");
+            RefreshPolicy.signalChange();
+            finishJob(job);
+            // An edited service may have just let go of its previous image
+            sweepOrphans(job.providerId, true);
+        });
+    }
+
+    private void retryLater(Job job, Exception e) {
+        running = false;
+        job.attempts++;
+        if (job.attempts >= MAX_ATTEMPTS) {
+            giveUp(job, "Giving up on image upload " + job.hash + ": "
+                    + StorageHelper.getImageUploadErrorMessage(context, e), null);
+            return;
+        }
+
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(job.attempts - 1, 20));
+        Log.w(TAG, "Image upload failed (attempt " + job.attempts + "), retrying in " + delay + " ms: "
+                + StorageHelper.getImageUploadErrorMessage(context, e));
+        persist();
+        handler.postDelayed(retry, delay);
+    }
+
+    // Dropped for good: the services keep their old image (or none), so say so
+    private void giveUp(Job job, String reason, Exception e) {
+        Log.e(TAG, reason, e);
+        ProToast.error(context, context.getString(R.string.error_image_upload_dropped));
+        finishJob(job);
+    }
+
+    // Done or dropped: forget the job and its files
+    private void finishJob(Job job) {
+        running = false;
+        jobs.remove(job);
+        deleteSource(job);
+        if (job.hash != null) {
+            for (int variant = 0; variant < StorageHelper.VARIANT_COUNT; variant++) {
+                File file = variantFile(job.hash, variant);
+                if (file.exists() && !file.delete()) {
+                    Log.w(TAG, "Could not delete " + file);
+                }
+            }
+        }
+        persist();
+        processNext();
+    }
+
+    private void deleteSource(Job job) {
+        if (job.sourceFile == null) return;
+        File source = queueFile(job.sourceFile);
+        if (source.exists() && !source.delete()) {
+            Log.w(TAG, "Could not delete " + source);
+        }
+        job.sourceFile = null;
+    }
+
+    // =========================================================
+    // ORPHAN SWEEP
+    // =========================================================
+    // Deletes images under service_images/{providerId}/ that none of the provider's services
+    // references anymore (replaced on edit, service deleted). Runs at most once a day per
+    // provider unless forced, and never while an upload for that provider is pending, since
+    // its objects are not referenced until the job patches the services.
+    public void sweepOrphans(String providerId) {
+        sweepOrphans(providerId, false);
+    }
+
+    private void sweepOrphans(String providerId, boolean force) {
+        if (providerId == null || providerId.isEmpty() || hasPendingJob(providerId)) return;
+
+        long now = System.currentTimeMillis();
+        if (!force && now - prefs.getLong(KEY_LAST_SWEEP + providerId, 0) < SWEEP_INTERVAL_MS) return;
+        prefs.edit().putLong(KEY_LAST_SWEEP + providerId, now).apply();
+
+        db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                .document(providerId)
+                .collection(FirestoreHelper.COLLECTION_SERVICES)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    Set<String> referenced = new HashSet<>();
+                    for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                        addReferencedName(referenced, doc.getString("imageUrl"));
+                        addReferencedName(referenced, doc.getString("mediumImageUrl"));
+                        addReferencedName(referenced, doc.getString("thumbnailUrl"));
+                    }
+
+                    storageRef.child(StorageHelper.providerImagesPath(providerId)).listAll()
+                            .addOnSuccessListener(listing -> {
+                                // Re-checked: an upload may have been queued while listing
+                                if (hasPendingJob(providerId)) return;
+
+                                int deleted = 0;
+                                for (StorageReference item : listing.getItems()) {
+                                    if (referenced.contains(item.getName())) continue;
+                                    item.delete().addOnFailureListener(e ->
+                                            Log.w(TAG, "Could not delete orphaned image " + item.getPath(), e));
+                                    deleted++;
+                                }
+                                if (deleted > 0) {
+                                    Log.i(TAG, "Deleting " + deleted + " orphaned image(s) of provider " + providerId);
+                                }
+                            })
+                            .addOnFailureListener(e -> Log.w(TAG, "Orphan sweep: listing failed", e));
+                })
+                .addOnFailureListener(e -> Log.w(TAG, "Orphan sweep: loading services failed", e));
+    }
+
+    private boolean hasPendingJob(String providerId) {
+        for (Job job : jobs) {
+            if (job.providerId.equals(providerId)) return true;
+        }
+        return false;
+    }
+
+    // Object name behind a Storage download URL; other URLs (or none) reference nothing here
+    private static void addReferencedName(Set<String> names, String url) {
+        if (url == null || url.isEmpty()) return;
+        try {
+            names.add(FirebaseStorage.getInstance().getReferenceFromUrl(url).getName());
+        } catch (IllegalArgumentException ignored) {
+            // not a Firebase Storage URL
+        }
+    }
+
+    // =========================================================
+    // PERSISTENCE
+    // =========================================================
+    private void load() {
+        String json = prefs.getString(KEY_JOBS, null);
+        if (json == null) return;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                jobs.add(Job.fromJson(array.getJSONObject(i)));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Corrupt upload queue, starting empty", e);
+            jobs.clear();
+        }
+    }
+
+    private void persist() {
+        persist(false);
+    }
+
+    // sync: on disk before returning (a new job, whose caller may finish right after)
+    private void persist(boolean sync) {
+        JSONArray array = new JSONArray();
+        try {
+            for (Job job : jobs) {
+                array.put(job.toJson());
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not save upload queue", e);
+            return;
+        }
+        SharedPreferences.Editor editor = prefs.edit().putString(KEY_JOBS, array.toString());
+        if (sync) {
+            if (!editor.commit()) Log.e(TAG, "Could not save upload queue");
+        } else {
+            editor.apply();
+        }
+    }
+
+    private File variantFile(String hash, int variant) {
+        return queueFile(hash + "_" + variant + ".webp");
+    }
+
+    private File queueFile(String name) {
+        return new File(new File(context.getFilesDir(), QUEUE_DIR), name);
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    private static void writeFile(File file, InputStream in) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    static String sha256Hex(byte[] data) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    // =========================================================
+    // JOB
+    // =========================================================
+    private static final class Job {
+        String hash;                 // SHA-256 of the original variant, also the Storage file name (null until prepared)
+        String sourceFile;           // copy of the picked image in QUEUE_DIR, until prepared
+        final String providerId;
+        final List<String> serviceIds = new ArrayList<>();
+        final String[] sessionUris = new String[StorageHelper.VARIANT_COUNT];
+        final String[] downloadUrls = new String[StorageHelper.VARIANT_COUNT];
+        int attempts = 0;
+
+        Job(String hash, String providerId) {
+            this.hash = hash;
+            this.providerId = providerId;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("hash", hash != null ? hash : JSONObject.NULL);
+            json.put("sourceFile", sourceFile != null ? sourceFile : JSONObject.NULL);
+            json.put("providerId", providerId);
+            json.put("attempts", attempts);
+            json.put("serviceIds", new JSONArray(serviceIds));
+
+            JSONArray sessions = new JSONArray();
+            JSONArray urls = new JSONArray();
+            for (int variant = 0; variant < StorageHelper.VARIANT_COUNT; variant++) {
+                sessions.put(sessionUris[variant] != null ? sessionUris[variant] : JSONObject.NULL);
+                urls.put(downloadUrls[variant] != null ? downloadUrls[variant] : JSONObject.NULL);
+            }
+            json.put("sessionUris", sessions);
+            json.put("downloadUrls", urls);
+            return json;
+        }
+
+        static Job fromJson(JSONObject json) throws JSONException {
+            Job job = new Job(json.isNull("hash") ? null : json.getString("hash"), json.getString("providerId"));
+            job.sourceFile = json.isNull("sourceFile") ? null : json.getString("sourceFile");
+            job.attempts = json.optInt("attempts", 0);
+
+            JSONArray serviceIds = json.getJSONArray("serviceIds");
+            for (int i = 0; i < serviceIds.length(); i++) {
+                job.serviceIds.add(serviceIds.getString(i));
+            }
+            JSONArray sessions = json.getJSONArray("sessionUris");
+            JSONArray urls = json.getJSONArray("downloadUrls");
+            for (int variant = 0; variant < StorageHelper.VARIANT_COUNT; variant++) {
+                job.sessionUris[variant] = sessions.isNull(variant) ? null : sessions.getString(variant);
+                job.downloadUrls[variant] = urls.isNull(variant) ? null : urls.getString(variant);
+            }
+            return job;
+        }
+    }
+
+    // =========================================================
+    // CALLBACK INTERFACE
+    // =========================================================
+    public interface OnEnqueueListener {
+        // Copied and saved: the upload now runs without the caller
+        void onEnqueued();
+        // The picked image could not be read; nothing was queued
+        void onEnqueueFailed();
+    }
+}
@@ -0,0 +1,31 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+import edu.sjsu.android.servicesfinder.model.Provider;
+
+// Room access to the cached providers (see AppDatabase)
+@Dao
+public interface ProviderDao {
+
+    @Query("SELECT * FROM providers")
+    List<Provider> getAll();
+
+    @Query("SELECT * FROM providers WHERE id IN (:ids)")
+    List<Provider> getByIds(List<String> ids);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<Provider> providers);
+
+    @Query("DELETE FROM providers")
+    void deleteAll();
+
+    // Providers with no cached service left
+    @Query("DELETE FROM providers WHERE id NOT IN (SELECT DISTINCT providerId FROM provider_services)")
+    void deleteWithoutServices();
+}
@@ -3,6 +3,8 @@ package edu.sjsu.android.servicesfinder.database;
 import android.content.Context;
 import android.util.Log;
 
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
@@ -10,6 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import edu.sjsu.android.servicesfinder.R;
+import edu.sjsu.android.servicesfinder.controller.RefreshPolicy;
 import edu.sjsu.android.servicesfinder.model.Provider;
 
 /* ***********************************************************************************************
@@ -25,6 +28,7 @@ import edu.sjsu.android.servicesfinder.model.Provider;
  * MVC ROLE: Database/Model layer
  *************************************************************************************************/
 public class ProviderDatabase {
+    private static final String TAG = "ProviderDatabase";
     private static final String COLLECTION_PROVIDERS = "providers";
     private final FirebaseFirestore db;
     private final Context context;
@@ -108,6 +112,8 @@ public class ProviderDatabase {
         provider.setAddress(doc.getString("address"));
         provider.setPhone(doc.getString("phone"));
         provider.setPassword(doc.getString("password"));
+        provider.setRatingSum(doc.getDouble(ReviewDatabase.FIELD_RATING_SUM));
+        provider.setRatingCount(doc.getLong(ReviewDatabase.FIELD_RATING_COUNT));
         return provider;
     }
 
@@ -149,6 +155,7 @@ public class ProviderDatabase {
                 .document(providerId)
                 .update(updates)
                 .addOnSuccessListener(aVoid -> {
+                    RefreshPolicy.signalChange();   // name/address show on the home cards
                     listener.onSuccess(context.getString(R.string.success_provider_updated));
                 })
                 .addOnFailureListener(e -> {
@@ -159,33 +166,52 @@ public class ProviderDatabase {
     // Deletes a provider document from Firestore by UID.
     // =========================================================
 
+    // Services are removed in 500-op batches (BatchWriter); the provider document is
+    // deleted only after every service delete has committed.
     public void deleteProvider(String providerId, OnProviderOperationListener listener) {
+        DocumentReference providerRef = db.collection(COLLECTION_PROVIDERS).document(providerId);
+
         // Step 1: Delete all services in subcollection
-        db.collection(COLLECTION_PROVIDERS)
-                .document(providerId)
-                .collection("services")
+        providerRef.collection("services")
                 .get()
                 .addOnSuccessListener(query -> {
+                    BatchWriter writer = new BatchWriter(db);
                     for (DocumentSnapshot doc : query.getDocuments()) {
-                        doc.getReference().delete();
+                        writer.delete(doc.getReference());
                     }
 
-                    // Step 2: Delete the provider document itself
-                    db.collection(COLLECTION_PROVIDERS)
-                            .document(providerId)
-                            .delete()
-                            .addOnSuccessListener(aVoid -> {
-                                listener.onSuccess(context.getString(R.string.success_provider_and_services_deleted));
-                            })
-                            .addOnFailureListener(e -> {
-                                listener.onError(context.getString(R.string.error_delete_provider_failed, e.getMessage()));
-                            });
+                    writer.commit(new BatchWriter.OnBatchWriteListener() {
+                        @Override
+                        public void onProgress(int committedOps, int totalOps) {
+                            Log.d(TAG, "Deleted " + committedOps + "/" + totalOps + " services of " + providerId);
+                        }
+
+                        @Override
+                        public void onComplete(int totalOps) {
+                            // Step 2: Delete the provider document itself
+                            providerRef.delete()
+                                    .addOnSuccessListener(aVoid -> {
+                                        RefreshPolicy.signalChange();
+                                        listener.onSuccess(context.getString(R.string.success_provider_and_services_deleted));
+                                    })
+                                    .addOnFailureListener(e -> {
+                                        listener.onError(context.getString(R.string.error_delete_provider_failed, e.getMessage()));
+                                    });
+                        }
+
+                        @Override
+                        public void onError(Exception e, int committedOps) {
+                            listener.onError(context.getString(R.string.error_delete_services_failed, e.getMessage()));
+                        }
+                    });
                 })
                 .addOnFailureListener(e -> {
                     listener.onError(context.getString(R.string.error_delete_services_failed, e.getMessage()));
                 });
     }
     /// ///////////////////////////////////////////////////////////////////////////////////////////
+    // Copies every service document (same IDs) in 500-op batches; success is reported only
+    // once all of them have committed.
     public void cloneServices(String fromProviderId, String toProviderId, OnProviderOperationListener listener) {
         db.collection(COLLECTION_PROVIDERS)
                 .document(fromProviderId)
@@ -197,17 +223,34 @@ public class ProviderDatabase {
                         return;
                     }
 
+                    CollectionReference target = db.collection(COLLECTION_PROVIDERS)
+                            .document(toProviderId)
+                            .collection("services");
+                    BatchWriter writer = new BatchWriter(db);
                     for (DocumentSnapshot doc : query.getDocuments()) {
                         Map<String, Object> serviceData = doc.getData();
                         if (serviceData != null) {
-                            db.collection(COLLECTION_PROVIDERS)
-                                    .document(toProviderId)
-                                    .collection("services")
-                                    .document(doc.getId())
-                                    .set(serviceData);
+                            writer.set(target.document(doc.getId()), serviceData);
                         }
                     }
-                    listener.onSuccess("Services cloned");
+
+                    writer.commit(new BatchWriter.OnBatchWriteListener() {
+                        @Override
+                        public void onProgress(int committedOps, int totalOps) {
+                            Log.d(TAG, "Cloned " + committedOps + "/" + totalOps + " services to " + toProviderId);
+                        }
+
+                        @Override
+                        public void onComplete(int totalOps) {
+                            RefreshPolicy.signalChange();
+                            listener.onSuccess("Services cloned");
+                        }
+
+                        @Override
+                        public void onError(Exception e, int committedOps) {
+                            listener.onError("Failed to clone services: " + e.getMessage());
+                        }
+                    });
                 })
                 .addOnFailureListener(e -> {
                     listener.onError("Failed to clone services: " + e.getMessage());
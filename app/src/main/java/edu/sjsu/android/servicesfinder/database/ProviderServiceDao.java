@@ -0,0 +1,43 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+import edu.sjsu.android.servicesfinder.model.ProviderService;
+
+// Room access to the cached provider services (see AppDatabase)
+@Dao
+public interface ProviderServiceDao {
+
+    // Newest first, same order as the home feed
+    @Query("SELECT * FROM provider_services ORDER BY timestamp DESC")
+    List<ProviderService> getAll();
+
+    @Query("SELECT * FROM provider_services WHERE id IN (:ids)")
+    List<ProviderService> getByIds(List<String> ids);
+
+    @Query("SELECT * FROM provider_services WHERE providerId IN (:providerIds)")
+    List<ProviderService> getByProviderIds(List<String> providerIds);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<ProviderService> services);
+
+    @Query("SELECT COUNT(*) FROM provider_services")
+    int count();
+
+    @Query("DELETE FROM provider_services")
+    void deleteAll();
+
+    // Drops cached services strictly inside a feed page's timestamp window that the page
+    // no longer contains (bounds are exclusive so neighbouring pages are never touched)
+    @Query("DELETE FROM provider_services WHERE timestamp < :newerThan AND timestamp > :olderThan AND id NOT IN (:keepIds)")
+    void deleteInRangeExcept(long newerThan, long olderThan, List<String> keepIds);
+
+    // The rows deleteInRangeExcept() is about to drop (their search entries go with them)
+    @Query("SELECT id FROM provider_services WHERE timestamp < :newerThan AND timestamp > :olderThan AND id NOT IN (:keepIds)")
+    List<String> getIdsInRangeExcept(long newerThan, long olderThan, List<String> keepIds);
+}
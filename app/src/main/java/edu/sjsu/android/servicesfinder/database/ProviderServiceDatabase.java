@@ -3,21 +3,39 @@ package edu.sjsu.android.servicesfinder.database;
 import android.content.Context;
 import android.util.Log;
 
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import edu.sjsu.android.servicesfinder.controller.Async;
+import edu.sjsu.android.servicesfinder.controller.DataMigrations;
 import edu.sjsu.android.servicesfinder.controller.FirestoreStringTranslator;
-import edu.sjsu.android.servicesfinder.controller.HomeController;
 import edu.sjsu.android.servicesfinder.model.Provider;
 import edu.sjsu.android.servicesfinder.model.ProviderService;
+import edu.sjsu.android.servicesfinder.model.ServiceCategory;
 
 /* ***********************************************************************************************
  * Database class for fetching providers with their services
@@ -25,6 +43,10 @@ import edu.sjsu.android.servicesfinder.model.ProviderService;
  *************************************************************************************************/
 
 public class ProviderServiceDatabase {
+    private static final String TAG = "ProviderServiceDatabase";
+    // Denormalized English category keys (see ProviderService.getCategoryKeys())
+    public static final String FIELD_CATEGORY_KEYS = "categoryKeys";
+
     /*
     private final FirebaseFirestore db;
     public ProviderServiceDatabase() {
@@ -34,6 +56,11 @@ public class ProviderServiceDatabase {
     private final FirebaseFirestore db;
     private final Context context;
 
+    // Providers already resolved for earlier feed pages (providerId -> Provider).
+    // Emptied whenever a first page is read (feed start, refresh, revalidation), so
+    // edited names, addresses and rating aggregates are picked up again.
+    private final Map<String, Provider> feedProviderCache = new HashMap<>();
+
     public ProviderServiceDatabase(Context context) {
         this.db = FirestoreHelper.getInstance();
         this.context = context.getApplicationContext();
@@ -46,192 +73,470 @@ public class ProviderServiceDatabase {
      * Returns a map of Provider -> List of ProviderService
      ************************************************************************************/
     public void getAllProvidersWithServices(Context context, OnProvidersWithServicesLoadedListener listener) {
-        db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
-                .get()
-                .addOnSuccessListener(providerSnapshot -> {
-                    if (providerSnapshot.isEmpty()) {
-                        listener.onSuccess(new HashMap<>());
-                        return;
+        loadActiveProvidersWithServices(context, listener);
+    }
+
+    /* **********************************************************************************
+     * Collection-group loader
+     * 1 query for every active service (all providers' "services" subcollections at once)
+     * + ceil(providers / 30) batched provider lookups, instead of 1 query per provider.
+     * Only providers that have at least one active service end up in the map.
+     ************************************************************************************/
+    public void loadActiveProvidersWithServices(Context context, OnProvidersWithServicesLoadedListener listener) {
+        loadProvidersWithServices(context, activeServices(), Async.NOT_CANCELLABLE, listener);
+    }
+
+    private Query activeServices() {
+        return db.collectionGroup(FirestoreHelper.COLLECTION_SERVICES)
+                .whereEqualTo("status", "Active");
+    }
+
+    // Runs a services query and groups the results under their (batch-fetched) providers.
+    // Parsing and grouping run on the computation pool; once the token is cancelled the
+    // provider lookups are not issued and the listener is not called.
+    private void loadProvidersWithServices(Context context, Query servicesQuery, CancellationToken token,
+                                           OnProvidersWithServicesLoadedListener listener) {
+        Async.deliver(providersWithServices(servicesQuery, token), token, listener::onSuccess,
+                e -> listener.onError(FirestoreHelper.handleFirestoreError(context, e)));
+    }
+
+    private Task<Map<Provider, List<ProviderService>>> providersWithServices(Query servicesQuery,
+                                                                            CancellationToken token) {
+        Task<Map<String, List<ProviderService>>> grouped = Async.map(servicesQuery.get(), token, servicesSnapshot -> {
+            Map<String, List<ProviderService>> servicesByProvider = new HashMap<>();
+
+            for (QueryDocumentSnapshot serviceDoc : servicesSnapshot) {
+                String providerId = ownerProviderId(serviceDoc);
+                if (providerId == null) continue;
+
+                List<ProviderService> services = servicesByProvider.get(providerId);
+                if (services == null) {
+                    services = new ArrayList<>();
+                    servicesByProvider.put(providerId, services);
+                }
+                services.add(documentToProviderService(serviceDoc));
+            }
+            return servicesByProvider;
+        });
+
+        return Async.then(grouped, token, servicesByProvider -> {
+            if (servicesByProvider.isEmpty()) {
+                return Tasks.<Map<Provider, List<ProviderService>>>forResult(new HashMap<>());
+            }
+            return Async.map(providersByIds(servicesByProvider.keySet()), token, providersById -> {
+                Map<Provider, List<ProviderService>> providerServiceMap = new HashMap<>();
+                for (Map.Entry<String, List<ProviderService>> entry : servicesByProvider.entrySet()) {
+                    Provider provider = providersById.get(entry.getKey());
+                    // Skip services whose provider document no longer exists
+                    if (provider != null) {
+                        providerServiceMap.put(provider, entry.getValue());
                     }
+                }
+                return providerServiceMap;
+            });
+        });
+    }
+
+    /* **********************************************************************************
+     * Paged home feed (newest first)
+     * Reads one page of active services ordered by timestamp, starting after the given cursor
+     * (null = first page). Only providers not seen on earlier pages are looked up; a first
+     * page looks all of its providers up again.
+     ************************************************************************************/
+    public void getActiveServicesPage(Context context, DocumentSnapshot cursor, int pageSize,
+                                      OnServicesPageLoadedListener listener) {
+        if (cursor == null) {
+            feedProviderCache.clear();
+        }
+        Query query = db.collectionGroup(FirestoreHelper.COLLECTION_SERVICES)
+                .whereEqualTo("status", "Active")
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .limit(pageSize);
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
 
-                    Map<Provider, List<ProviderService>> providerServiceMap = new HashMap<>();
-                    int[] pendingProviders = {providerSnapshot.size()};
-
-                    for (QueryDocumentSnapshot providerDoc : providerSnapshot) {
-                        Provider provider = documentToProvider(providerDoc);
-
-                        // Load services for this provider
-                        providerDoc.getReference()
-                                .collection("services")
-                                .whereEqualTo("status", "Active")
-                                .get()
-                                .addOnSuccessListener(servicesSnapshot -> {
-                                    List<ProviderService> services = new ArrayList<>();
-
-                                    for (QueryDocumentSnapshot serviceDoc : servicesSnapshot) {
-                                        ProviderService service = documentToProviderService(serviceDoc);
-                                        services.add(service);
-                                    }
-
-                                    // Only add providers that have services
-                                    if (!services.isEmpty()) {
-                                        providerServiceMap.put(provider, services);
-                                    }
-
-                                    // Check if all providers are loaded
-                                    pendingProviders[0]--;
-                                    if (pendingProviders[0] == 0) {
-                                        listener.onSuccess(providerServiceMap);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    pendingProviders[0]--;
-                                    if (pendingProviders[0] == 0) {
-                                        listener.onSuccess(providerServiceMap);
-                                    }
-                                });
+        query.get()
+                .addOnSuccessListener(servicesSnapshot -> {
+                    List<DocumentSnapshot> docs = servicesSnapshot.getDocuments();
+                    DocumentSnapshot nextCursor = docs.isEmpty() ? cursor : docs.get(docs.size() - 1);
+                    boolean hasMore = docs.size() == pageSize;
+
+                    // Keep feed order: providers appear in the order of their newest service on this page
+                    Map<String, List<ProviderService>> servicesByProvider = new LinkedHashMap<>();
+                    for (DocumentSnapshot serviceDoc : docs) {
+                        String providerId = ownerProviderId(serviceDoc);
+                        if (providerId == null) continue;
+
+                        List<ProviderService> services = servicesByProvider.get(providerId);
+                        if (services == null) {
+                            services = new ArrayList<>();
+                            servicesByProvider.put(providerId, services);
+                        }
+                        services.add(documentToProviderService(serviceDoc));
                     }
+
+                    Set<String> missing = new HashSet<>(servicesByProvider.keySet());
+                    missing.removeAll(feedProviderCache.keySet());
+
+                    fetchProvidersByIds(missing, providersById -> {
+                        feedProviderCache.putAll(providersById);
+
+                        Map<Provider, List<ProviderService>> page = new LinkedHashMap<>();
+                        for (Map.Entry<String, List<ProviderService>> entry : servicesByProvider.entrySet()) {
+                            Provider provider = feedProviderCache.get(entry.getKey());
+                            if (provider != null) {
+                                page.put(provider, entry.getValue());
+                            }
+                        }
+                        listener.onPageLoaded(page, nextCursor, hasMore);
+                    }, e -> listener.onError(FirestoreHelper.handleFirestoreError(context, e)));
                 })
                 .addOnFailureListener(e -> {
                     listener.onError(FirestoreHelper.handleFirestoreError(context, e));
                 });
     }
 
+    /* ***************************************************************************************
+     * Live active services
+     * One snapshot listener over the active services with a timestamp at or after SINCE: the
+     * first feed page (its oldest service), or only what is added or edited later (the newest
+     * service of a full load; saving a service bumps its timestamp). Cache-only
+     * snapshots before the first server sync are skipped (the list on screen already came from
+     * a read); the first synced snapshot is delivered whole (fullSnapshot = true, every service
+     * in the window as ADDED), later ones as the DocumentChanges they carry. Owners not seen
+     * before are looked up first; deliveries stay in snapshot order. The caller removes the
+     * registration when the screen stops or the list is reloaded from the top; the window is
+     * not moved while paging, since a new registration reads its whole window again.
+     *****************************************************************************************/
+    public ListenerRegistration listenForActiveServiceChanges(long since, OnServiceChangesListener listener) {
+        // Same ordering as the feed query, so both use one composite index
+        Query window = activeServices()
+                .whereGreaterThanOrEqualTo("timestamp", since)
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+        return window.addSnapshotListener(new ActiveServicesListener(listener));
+    }
+
+    private class ActiveServicesListener implements EventListener<QuerySnapshot> {
+        private final OnServiceChangesListener listener;
+        private boolean synced = false;
+        private Task<Void> deliveries = Tasks.forResult(null);   // keeps snapshots in order
+
+        ActiveServicesListener(OnServiceChangesListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onEvent(QuerySnapshot snapshot, FirebaseFirestoreException e) {
+            if (e != null) {
+                listener.onError(FirestoreHelper.handleFirestoreError(context, e));
+                return;
+            }
+            if (snapshot == null) return;
+
+            final boolean fullSnapshot;
+            final List<DocumentSnapshot> docs = new ArrayList<>();
+            final List<DocumentChange.Type> types = new ArrayList<>();
+
+            if (!synced) {
+                if (snapshot.getMetadata().isFromCache()) return;
+                synced = true;
+                fullSnapshot = true;
+                for (DocumentSnapshot doc : snapshot.getDocuments()) {
+                    docs.add(doc);
+                    types.add(DocumentChange.Type.ADDED);
+                }
+            } else {
+                fullSnapshot = false;
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    docs.add(change.getDocument());
+                    types.add(change.getType());
+                }
+                if (docs.isEmpty()) return;
+            }
+
+            Set<String> missing = new HashSet<>();
+            for (int i = 0; i < docs.size(); i++) {
+                String providerId = ownerProviderId(docs.get(i));
+                if (providerId != null && types.get(i) != DocumentChange.Type.REMOVED
+                        && !feedProviderCache.containsKey(providerId)) {
+                    missing.add(providerId);
+                }
+            }
+
+            deliveries = deliveries
+                    .continueWithTask(unused -> providersByIds(missing))
+                    .continueWith(lookup -> {
+                        if (lookup.isSuccessful()) {
+                            feedProviderCache.putAll(lookup.getResult());
+                        } else {
+                            Log.w(TAG, "Owner lookup for live services failed", lookup.getException());
+                        }
+
+                        List<ServiceChange> changes = new ArrayList<>();
+                        for (int i = 0; i < docs.size(); i++) {
+                            String providerId = ownerProviderId(docs.get(i));
+                            if (providerId == null) continue;
+                            Provider provider = feedProviderCache.get(providerId);
+                            // Skip services whose provider document no longer exists
+                            if (provider == null && types.get(i) != DocumentChange.Type.REMOVED) continue;
+
+                            changes.add(new ServiceChange(types.get(i), providerId, provider,
+                                    documentToProviderService(docs.get(i))));
+                        }
+                        listener.onServiceChanges(changes, fullSnapshot);
+                        return null;
+                    });
+        }
+    }
+
     /* ***************************************************************************************
      * Search providers and services by keyword
      * Searches in: provider name, service title, service description, category, service area
+     * Matching (with category translation) runs on the computation pool; a cancelled token
+     * drops the search wherever it is.
      ***************************************************************************************************/
-    public void searchProvidersAndServices(Context context,String query, OnProvidersWithServicesLoadedListener listener) {
+    public void searchProvidersAndServices(Context context, String query, CancellationToken token,
+                                           OnProvidersWithServicesLoadedListener listener) {
         if (query == null || query.trim().isEmpty()) {
-            getAllProvidersWithServices(context, listener);
+            loadProvidersWithServices(context, activeServices(), token, listener);
             return;
         }
 
         String lowerQuery = query.toLowerCase().trim();
 
-        db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
-                .get()
-                .addOnSuccessListener(providerSnapshot -> {
+        Task<Map<Provider, List<ProviderService>>> filtered = Async.map(providersWithServices(activeServices(), token), token,
+                providerServiceMap -> {
                     Map<Provider, List<ProviderService>> filteredMap = new HashMap<>();
-                    int[] pendingProviders = {providerSnapshot.size()};
-
-                    if (providerSnapshot.isEmpty()) {
-                        listener.onSuccess(filteredMap);
-                        return;
+                    // One helper/translator for the whole pass, not one per service
+                    FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
+
+                    for (Map.Entry<Provider, List<ProviderService>> entry : providerServiceMap.entrySet()) {
+                        Provider provider = entry.getKey();
+                        List<ProviderService> matchingServices = new ArrayList<>();
+
+                        for (ProviderService service : entry.getValue()) {
+                            // Check if service matches search query
+                            if (serviceMatchesQuery(service, provider, lowerQuery, translator)) {
+                                matchingServices.add(service);
+                            }
+                        }
+
+                        // If provider name matches but no services match, show all services
+                        if (matchingServices.isEmpty() &&
+                                provider.getFullName() != null &&
+                                provider.getFullName().toLowerCase().contains(lowerQuery)) {
+                            matchingServices.addAll(entry.getValue());
+                        }
+
+                        if (!matchingServices.isEmpty()) {
+                            filteredMap.put(provider, matchingServices);
+                        }
                     }
+                    return filteredMap;
+                });
+
+        Async.deliver(filtered, token, listener::onSuccess,
+                e -> listener.onError(FirestoreHelper.handleFirestoreError(context, e)));
+    }
+
+    /* ***************************************************************************************
+     * Favorites loader (customer profile)
+     * Reads only the given providers: whereIn(documentId) in chunks of WHERE_IN_LIMIT ids,
+     * then each found provider's active services. Every chunk is delivered as soon as it
+     * lands (favorites order, providers without active services left out); onComplete()
+     * follows the last one. Reads grow with the number of favorites, not the catalog.
+     *****************************************************************************************/
+    public void getFavoriteProvidersWithServices(Context context, Collection<String> providerIds,
+                                                 OnFavoritesLoadedListener listener) {
+        List<String> ids = new ArrayList<>(providerIds);
+        List<Task<Map<Provider, List<ProviderService>>>> chunks = new ArrayList<>();
+
+        for (int start = 0; start < ids.size(); start += FirestoreHelper.WHERE_IN_LIMIT) {
+            List<String> chunk = new ArrayList<>(
+                    ids.subList(start, Math.min(start + FirestoreHelper.WHERE_IN_LIMIT, ids.size())));
+
+            Task<Map<Provider, List<ProviderService>>> chunkTask = db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                    .whereIn(FieldPath.documentId(), chunk)
+                    .get()
+                    .onSuccessTask(providerDocs -> loadServicesOfProviders(chunk, providerDocs));
+
+            chunkTask.addOnSuccessListener(listener::onChunkLoaded);
+            chunks.add(chunkTask);
+        }
+
+        Tasks.whenAll(chunks)
+                .addOnSuccessListener(unused -> listener.onComplete())
+                .addOnFailureListener(e -> listener.onError(FirestoreHelper.handleFirestoreError(context, e)));
+    }
+
+    // One active-services query per provider found, results kept in the order of orderedIds
+    private Task<Map<Provider, List<ProviderService>>> loadServicesOfProviders(List<String> orderedIds,
+                                                                              QuerySnapshot providerDocs) {
+        Map<String, Provider> providersById = new HashMap<>();
+        for (QueryDocumentSnapshot providerDoc : providerDocs) {
+            providersById.put(providerDoc.getId(), documentToProvider(providerDoc));
+        }
 
-                    for (QueryDocumentSnapshot providerDoc : providerSnapshot) {
-                        Provider provider = documentToProvider(providerDoc);
-
-                        providerDoc.getReference()
-                                .collection("services")
-                                .whereEqualTo("status", "Active")
-                                .get()
-                                .addOnSuccessListener(servicesSnapshot -> {
-                                    List<ProviderService> matchingServices = new ArrayList<>();
-
-                                    for (QueryDocumentSnapshot serviceDoc : servicesSnapshot) {
-                                        ProviderService service = documentToProviderService(serviceDoc);
-
-                                        // Check if service matches search query
-
-                                        if (serviceMatchesQuery(service, provider, lowerQuery)) {
-                                            matchingServices.add(service);
-                                        }
-                                    }
-
-                                    // Add provider if they have matching services OR their name matches
-                                    if (!matchingServices.isEmpty() ||
-                                            (provider.getFullName() != null &&
-                                                    provider.getFullName().toLowerCase().contains(lowerQuery))) {
-
-                                        // If provider name matches but no services match, show all services
-                                        if (matchingServices.isEmpty()) {
-                                            for (QueryDocumentSnapshot serviceDoc : servicesSnapshot) {
-                                                matchingServices.add(documentToProviderService(serviceDoc));
-                                            }
-                                        }
-
-                                        filteredMap.put(provider, matchingServices);
-                                    }
-
-                                    pendingProviders[0]--;
-                                    if (pendingProviders[0] == 0) {
-                                        listener.onSuccess(filteredMap);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    pendingProviders[0]--;
-                                    if (pendingProviders[0] == 0) {
-                                        listener.onSuccess(filteredMap);
-                                    }
-                                });
+        List<Provider> providers = new ArrayList<>();
+        List<Task<QuerySnapshot>> serviceQueries = new ArrayList<>();
+        for (String id : orderedIds) {
+            Provider provider = providersById.get(id);
+            if (provider == null) continue;   // provider document no longer exists
+
+            providers.add(provider);
+            serviceQueries.add(db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                    .document(id)
+                    .collection(FirestoreHelper.COLLECTION_SERVICES)
+                    .whereEqualTo("status", "Active")
+                    .get());
+        }
+
+        return Tasks.<QuerySnapshot>whenAllSuccess(serviceQueries).onSuccessTask(snapshots -> {
+            Map<Provider, List<ProviderService>> result = new LinkedHashMap<>();
+            for (int i = 0; i < snapshots.size(); i++) {
+                List<ProviderService> services = new ArrayList<>();
+                for (QueryDocumentSnapshot serviceDoc : snapshots.get(i)) {
+                    services.add(documentToProviderService(serviceDoc));
+                }
+                if (!services.isEmpty()) {
+                    result.put(providers.get(i), services);
+                }
+            }
+            return Tasks.forResult(result);
+        });
+    }
+
+    /* ***************************************************************************************
+     * Load services by category
+     * Server-side: only active services whose categoryKeys array contains the category,
+     * i.e. the provider picked at least one service under it. Needs the collection-group
+     * composite index (status ASC, categoryKeys CONTAINS) on "services".
+     * Until this install has seen the categoryKeys backfill done (see DataMigrations), older
+     * documents may lack the field and the query would miss them: every active service is
+     * read instead and matched here on its parsed category, which gives the same keys.
+     * Cancelling the token (the user picked another chip) skips whatever is left of it.
+     *****************************************************************************************/
+    public void getProvidersByCategory(Context context, String category, CancellationToken token,
+                                       OnProvidersWithServicesLoadedListener listener) {
+        if (DataMigrations.isDone(context, DataMigrations.CATEGORY_KEYS)) {
+            loadProvidersWithServices(context,
+                    activeServices().whereArrayContains(FIELD_CATEGORY_KEYS, category),
+                    token, listener);
+            return;
+        }
+
+        Task<Map<Provider, List<ProviderService>>> matched = Async.map(providersWithServices(activeServices(), token), token,
+                providerServiceMap -> {
+                    Map<Provider, List<ProviderService>> categoryMap = new HashMap<>();
+                    for (Map.Entry<Provider, List<ProviderService>> entry : providerServiceMap.entrySet()) {
+                        List<ProviderService> matchingServices = new ArrayList<>();
+                        for (ProviderService service : entry.getValue()) {
+                            if (service.getCategoryKeys().contains(category)) {
+                                matchingServices.add(service);
+                            }
+                        }
+                        if (!matchingServices.isEmpty()) {
+                            categoryMap.put(entry.getKey(), matchingServices);
+                        }
                     }
-                })
-                .addOnFailureListener(e -> {
-                    listener.onError(FirestoreHelper.handleFirestoreError(context, e));
+                    return categoryMap;
                 });
+
+        Async.deliver(matched, token, listener::onSuccess,
+                e -> listener.onError(FirestoreHelper.handleFirestoreError(context, e)));
     }
 
-    // =========================================================
-    // Load services by category
-    // =========================================================
-    public void getProvidersByCategory(Context context, String category, OnProvidersWithServicesLoadedListener listener) {
-        db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+    /* ***************************************************************************************
+     * Backfill of categoryKeys on every service saved before the field existed, active or not
+     * (run once for the whole app, see DataMigrations). Only documents whose stored keys
+     * differ are written, through BatchWriter.
+     *****************************************************************************************/
+    public void backfillCategoryKeys(OnCategoryKeysBackfillListener listener) {
+        db.collectionGroup(FirestoreHelper.COLLECTION_SERVICES)
                 .get()
-                .addOnSuccessListener(providerSnapshot -> {
-                    Map<Provider, List<ProviderService>> categoryMap = new HashMap<>();
-                    int[] pendingProviders = {providerSnapshot.size()};
-
-                    if (providerSnapshot.isEmpty()) {
-                        listener.onSuccess(categoryMap);
-                        return;
+                .addOnSuccessListener(servicesSnapshot -> {
+                    BatchWriter writer = new BatchWriter(db);
+                    for (DocumentSnapshot serviceDoc : servicesSnapshot.getDocuments()) {
+                        List<String> keys = ServiceCategory.parse(serviceDoc.getString("category")).keys();
+                        if (keys.equals(serviceDoc.get(FIELD_CATEGORY_KEYS))) continue;
+
+                        Map<String, Object> update = new HashMap<>();
+                        update.put(FIELD_CATEGORY_KEYS, keys);
+                        writer.update(serviceDoc.getReference(), update);
                     }
 
-                    for (QueryDocumentSnapshot providerDoc : providerSnapshot) {
-                        Provider provider = documentToProvider(providerDoc);
-
-                        providerDoc.getReference()
-                                .collection("services")
-                                .whereEqualTo("status", "Active")
-                                .get()
-                                .addOnSuccessListener(servicesSnapshot -> {
-                                    List<ProviderService> matchingServices = new ArrayList<>();
-
-                                    for (QueryDocumentSnapshot serviceDoc : servicesSnapshot) {
-                                        ProviderService service = documentToProviderService(serviceDoc);
-
-                                        if (service.getCategory() != null &&
-                                                service.getCategory().contains(category)) {
-                                            matchingServices.add(service);
-                                        }
-                                    }
-
-                                    if (!matchingServices.isEmpty()) {
-                                        categoryMap.put(provider, matchingServices);
-                                    }
-
-                                    pendingProviders[0]--;
-                                    if (pendingProviders[0] == 0) {
-                                        listener.onSuccess(categoryMap);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    pendingProviders[0]--;
-                                    if (pendingProviders[0] == 0) {
-                                        listener.onSuccess(categoryMap);
-                                    }
-                                });
-                    }
+                    writer.commit(new BatchWriter.OnBatchWriteListener() {
+                        @Override
+                        public void onProgress(int committedOps, int totalOps) {}
+
+                        @Override
+                        public void onComplete(int totalOps) {
+                            listener.onBackfillComplete(totalOps);
+                        }
+
+                        @Override
+                        public void onError(Exception e, int committedOps) {
+                            Log.e(TAG, "Category keys backfill write failed", e);
+                            listener.onError(e.getMessage());
+                        }
+                    });
                 })
                 .addOnFailureListener(e -> {
-                    listener.onError(FirestoreHelper.handleFirestoreError(context, e));
+                    Log.e(TAG, "Category keys backfill read failed", e);
+                    listener.onError(e.getMessage());
                 });
     }
+
+    /* ***************************************************************************************
+     * Batched provider lookup: whereIn(documentId) in chunks of WHERE_IN_LIMIT ids,
+     * all chunks issued in parallel. Returns providerId -> Provider.
+     *****************************************************************************************/
+    private void fetchProvidersByIds(Collection<String> providerIds,
+                                     OnSuccessListener<Map<String, Provider>> onLoaded,
+                                     OnFailureListener onFailure) {
+        providersByIds(providerIds)
+                .addOnSuccessListener(onLoaded)
+                .addOnFailureListener(onFailure);
+    }
+
+    private Task<Map<String, Provider>> providersByIds(Collection<String> providerIds) {
+        List<String> ids = new ArrayList<>(providerIds);
+        List<Task<QuerySnapshot>> lookups = new ArrayList<>();
+
+        for (int start = 0; start < ids.size(); start += FirestoreHelper.WHERE_IN_LIMIT) {
+            List<String> chunk = new ArrayList<>(
+                    ids.subList(start, Math.min(start + FirestoreHelper.WHERE_IN_LIMIT, ids.size())));
+            lookups.add(db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                    .whereIn(FieldPath.documentId(), chunk)
+                    .get());
+        }
+
+        return Tasks.<QuerySnapshot>whenAllSuccess(lookups).continueWith(lookup -> {
+            if (!lookup.isSuccessful()) throw lookup.getException();
+
+            Map<String, Provider> providersById = new HashMap<>();
+            for (QuerySnapshot snapshot : lookup.getResult()) {
+                for (QueryDocumentSnapshot providerDoc : snapshot) {
+                    providersById.put(providerDoc.getId(), documentToProvider(providerDoc));
+                }
+            }
+            return providersById;
+        });
+    }
+
+    // services live at providers/{providerId}/services/{serviceId}; the path is the source of truth
+    // (cloned services may still carry the old "providerId" field)
+    private String ownerProviderId(DocumentSnapshot serviceDoc) {
+        DocumentReference providerRef = serviceDoc.getReference().getParent().getParent();
+        return providerRef != null ? providerRef.getId() : null;
+    }
+
     // =========================================================
     // HELPER METHODS
     // =========================================================
-    private boolean serviceMatchesQuery(ProviderService service, Provider provider, String query) {
+    private boolean serviceMatchesQuery(ProviderService service, Provider provider, String query,
+                                        FirestoreStringTranslator translator) {
         if (service.getServiceTitle() != null) {
             if (service.getServiceTitle().toLowerCase().contains(query)) {
                 return true;
@@ -243,15 +548,9 @@ public class ProviderServiceDatabase {
                 return true;
             }
         }
-        // Category — CLEAN FIRST → THEN TRANSLATE → SEARCH
-        if (service.getCategory() != null) {
-            // Extract only categories that actually have services
-            HomeController controller = new HomeController(context);
-            String cleaned = controller.extractProviderCategoryWithServices(service.getCategory());
-
-            // Translate the cleaned string
-            FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
-            String localized = translator.translateCategory(cleaned);
+        // Category — PRIMARY (categories with services) → TRANSLATE → SEARCH
+        if (!service.getParsedCategory().isEmpty()) {
+            String localized = translator.formatLocalized(service.getParsedCategory().primary());
 
             if (localized.toLowerCase().contains(query.toLowerCase())) {
                 return true;
@@ -275,10 +574,12 @@ public class ProviderServiceDatabase {
         provider.setEmail(doc.getString("email"));
         provider.setPhone(doc.getString("phone"));
         provider.setAddress(doc.getString("address"));
+        provider.setRatingSum(doc.getDouble(ReviewDatabase.FIELD_RATING_SUM));
+        provider.setRatingCount(doc.getLong(ReviewDatabase.FIELD_RATING_COUNT));
         return provider;
     }
 
-    private ProviderService documentToProviderService(QueryDocumentSnapshot doc) {
+    private ProviderService documentToProviderService(DocumentSnapshot doc) {
         ProviderService service = new ProviderService();
         service.setId(doc.getId());
         service.setProviderId(doc.getString("providerId"));
@@ -290,6 +591,8 @@ public class ProviderServiceDatabase {
         service.setAvailability(doc.getString("availability"));
         service.setContactPreference(doc.getString("contactPreference"));
         service.setImageUrl(doc.getString("imageUrl"));
+        service.setMediumImageUrl(doc.getString("mediumImageUrl"));
+        service.setThumbnailUrl(doc.getString("thumbnailUrl"));
 
         Long timestamp = doc.getLong("timestamp");
         if (timestamp != null) {
@@ -308,6 +611,48 @@ public class ProviderServiceDatabase {
         void onError(String errorMessage);
     }
 
+    public interface OnFavoritesLoadedListener {
+        // One chunk of favorite providers with their active services (may be empty)
+        void onChunkLoaded(Map<Provider, List<ProviderService>> chunk);
+        // All chunks delivered
+        void onComplete();
+        void onError(String errorMessage);
+    }
+
+    public interface OnCategoryKeysBackfillListener {
+        void onBackfillComplete(int servicesUpdated);
+        void onError(String error);
+    }
+
+    public interface OnServicesPageLoadedListener {
+        // nextCursor: pass back to load the following page; hasMore: false once the feed is exhausted
+        void onPageLoaded(Map<Provider, List<ProviderService>> page, DocumentSnapshot nextCursor, boolean hasMore);
+        void onError(String errorMessage);
+    }
+
+    public interface OnServiceChangesListener {
+        // fullSnapshot: changes hold every active service in the window (first synced
+        // snapshot), not a delta
+        void onServiceChanges(List<ServiceChange> changes, boolean fullSnapshot);
+        void onError(String errorMessage);
+    }
+
+    // One DocumentChange on an active service. provider is null for REMOVED when the
+    // owner was never looked up; providerId is always set.
+    public static final class ServiceChange {
+        public final DocumentChange.Type type;
+        public final String providerId;
+        public final Provider provider;
+        public final ProviderService service;
+
+        public ServiceChange(DocumentChange.Type type, String providerId, Provider provider, ProviderService service) {
+            this.type = type;
+            this.providerId = providerId;
+            this.provider = provider;
+            this.service = service;
+        }
+    }
+
     // =========================================================
     // FIRESTORE SAVE / UPDATE
     // =========================================================
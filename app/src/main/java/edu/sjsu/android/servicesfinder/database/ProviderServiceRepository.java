@@ -0,0 +1,427 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import edu.sjsu.android.servicesfinder.controller.AppExecutors;
+import edu.sjsu.android.servicesfinder.controller.FirestoreStringTranslator;
+import edu.sjsu.android.servicesfinder.model.Provider;
+import edu.sjsu.android.servicesfinder.model.ProviderService;
+import edu.sjsu.android.servicesfinder.model.ServiceSearchEntry;
+
+/* ***********************************************************************************************
+ * Offline-first access to the home screen data (stale-while-revalidate)
+ * - The Room copy (AppDatabase) is read on the disk thread and handed out first
+ * - Firestore (ProviderServiceDatabase) is queried at the same time; its result is written
+ *   back to Room and then delivered, replacing what the cache showed
+ * - Search runs against a local FTS index (service_search) rebuilt with every cache write
+ * Callbacks always arrive on the main thread. Objects handed out are never written to Room
+ * afterwards, so callers may modify them (e.g. localize categories).
+ *************************************************************************************************/
+public class ProviderServiceRepository {
+    private static final String TAG = "ProviderServiceRepo";
+    private static final int SQL_IN_CHUNK = 500;   // stay under SQLite's bound-variable limit
+
+    // Locale the localized category text in the search index was built for; persisted
+    // with the index so a cold start does not rebuild it
+    private static final String PREF_SEARCH_INDEX = "services_finder_search_index";
+    private static final String KEY_INDEX_LOCALE = "locale";
+
+    private final ProviderServiceDatabase remote;
+    private final AppDatabase local;
+    private final Context context;
+    private final SharedPreferences indexPrefs;
+
+    public ProviderServiceRepository(Context context) {
+        this.context = context.getApplicationContext();
+        this.remote = new ProviderServiceDatabase(this.context);
+        this.local = AppDatabase.getInstance(this.context);
+        this.indexPrefs = this.context.getSharedPreferences(PREF_SEARCH_INDEX, Context.MODE_PRIVATE);
+    }
+
+    /* **********************************************************************************
+     * Full home data: cached copy first (if any), then the fresh Firestore result.
+     * A network error is only reported when there was nothing cached to show.
+     ************************************************************************************/
+    public void loadProvidersWithServices(OnHomeDataLoadedListener listener) {
+        final boolean[] freshDelivered = {false};   // main thread only
+        final boolean[] cacheShown = {false};
+        final boolean[] cacheChecked = {false};
+        final String[] pendingError = {null};
+
+        readCache(cached -> {
+            cacheChecked[0] = true;
+            if (freshDelivered[0]) return;   // network won the race; cache is older
+
+            if (!cached.isEmpty()) {
+                cacheShown[0] = true;
+                listener.onDataLoaded(cached, true);
+            } else if (pendingError[0] != null) {
+                listener.onError(pendingError[0]);
+            }
+        });
+
+        remote.getAllProvidersWithServices(context, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
+            @Override
+            public void onSuccess(Map<Provider, List<ProviderService>> providerServiceMap) {
+                List<Provider> providers = new ArrayList<>();
+                List<ProviderService> services = new ArrayList<>();
+                copyForCache(providerServiceMap, providers, services);
+
+                AppExecutors.diskIO().execute(() -> {
+                    try {
+                        local.runInTransaction(() -> {
+                            local.providerServiceDao().deleteAll();
+                            local.providerDao().deleteAll();
+                            local.providerDao().upsertAll(providers);
+                            local.providerServiceDao().upsertAll(services);
+                            rebuildSearchIndex();   // every row was replaced anyway
+                        });
+                        saveIndexLocale();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Failed to refresh local cache", e);
+                    }
+                    AppExecutors.mainThread().execute(() -> {
+                        freshDelivered[0] = true;
+                        listener.onDataLoaded(providerServiceMap, false);
+                    });
+                });
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                if (cacheShown[0]) {
+                    Log.w(TAG, "Refresh failed, keeping cached data: " + errorMessage);
+                } else if (cacheChecked[0]) {
+                    listener.onError(errorMessage);
+                } else {
+                    pendingError[0] = errorMessage;   // decide once we know whether a cache exists
+                }
+            }
+        });
+    }
+
+    /* **********************************************************************************
+     * Cached copy only (newest service first), for showing something before the
+     * first network page of the feed arrives.
+     ************************************************************************************/
+    public void loadCached(ProviderServiceDatabase.OnProvidersWithServicesLoadedListener listener) {
+        readCache(listener::onSuccess);
+    }
+
+    /* **********************************************************************************
+     * Feed page from Firestore, written through to the cache.
+     * Cached services inside the page's timestamp window that the page no longer contains
+     * were deleted or deactivated remotely and are dropped.
+     ************************************************************************************/
+    public void getActiveServicesPage(DocumentSnapshot cursor, int pageSize,
+                                      ProviderServiceDatabase.OnServicesPageLoadedListener listener) {
+        final long newest = cursor == null ? Long.MAX_VALUE : timestampOf(cursor);
+
+        remote.getActiveServicesPage(context, cursor, pageSize, new ProviderServiceDatabase.OnServicesPageLoadedListener() {
+            @Override
+            public void onPageLoaded(Map<Provider, List<ProviderService>> page, DocumentSnapshot nextCursor, boolean hasMore) {
+                List<Provider> providers = new ArrayList<>();
+                List<ProviderService> services = new ArrayList<>();
+                copyForCache(page, providers, services);
+
+                final long oldest = hasMore && nextCursor != null ? timestampOf(nextCursor) : Long.MIN_VALUE;
+                List<String> keepIds = new ArrayList<>();
+                for (ProviderService service : services) keepIds.add(service.getId());
+                List<String> providerIds = new ArrayList<>();
+                for (Provider provider : providers) providerIds.add(provider.getId());
+
+                AppExecutors.diskIO().execute(() -> {
+                    try {
+                        final boolean localeChanged = !indexMatchesLocale();
+                        local.runInTransaction(() -> {
+                            List<String> removedIds = local.providerServiceDao().getIdsInRangeExcept(newest, oldest, keepIds);
+                            local.providerServiceDao().deleteInRangeExcept(newest, oldest, keepIds);
+                            local.providerDao().upsertAll(providers);
+                            local.providerServiceDao().upsertAll(services);
+                            local.providerDao().deleteWithoutServices();
+
+                            if (localeChanged) {
+                                rebuildSearchIndex();
+                            } else {
+                                updateSearchIndex(providerIds, removedIds);
+                            }
+                        });
+                        if (localeChanged) saveIndexLocale();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Failed to cache feed page", e);
+                    }
+                });
+
+                listener.onPageLoaded(page, nextCursor, hasMore);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                listener.onError(errorMessage);
+            }
+        });
+    }
+
+    /* **********************************************************************************
+     * Local full-text search over the cached services
+     * Every word of the query must match as a word prefix in the title, description,
+     * category (English or localized), service area or provider name. Results are ranked
+     * with BM25 (ServiceSearchRanker); providers come in the order of their best service.
+     * With nothing cached yet, falls back to the Firestore search. A search cancelled
+     * while queued behind other disk work never runs.
+     ************************************************************************************/
+    public void searchProvidersAndServices(String query, CancellationToken token,
+                                           ProviderServiceDatabase.OnProvidersWithServicesLoadedListener listener) {
+        String matchQuery = ServiceSearchRanker.toMatchQuery(query);
+        if (matchQuery == null) {
+            listener.onSuccess(new LinkedHashMap<>());
+            return;
+        }
+
+        AppExecutors.diskIO().execute(() -> {
+            if (token.isCancellationRequested()) return;
+
+            Map<Provider, List<ProviderService>> results;
+            try {
+                if (local.providerServiceDao().count() == 0) {
+                    AppExecutors.mainThread().execute(() ->
+                            remote.searchProvidersAndServices(context, query, token, listener));
+                    return;
+                }
+                if (!indexMatchesLocale()) {
+                    local.runInTransaction(this::rebuildSearchIndex);
+                    saveIndexLocale();
+                }
+                results = runLocalSearch(matchQuery);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Local search failed", e);
+                AppExecutors.mainThread().execute(() ->
+                        remote.searchProvidersAndServices(context, query, token, listener));
+                return;
+            }
+            AppExecutors.mainThread().execute(() -> {
+                if (!token.isCancellationRequested()) listener.onSuccess(results);
+            });
+        });
+    }
+
+    private Map<Provider, List<ProviderService>> runLocalSearch(String matchQuery) {
+        List<ServiceSearchDao.SearchHit> hits = local.serviceSearchDao().search(matchQuery);
+
+        Map<String, Double> scores = new HashMap<>();   // providerId/serviceId -> score
+        List<String> serviceIds = new ArrayList<>();
+        Set<String> providerIdSet = new LinkedHashSet<>();
+        for (ServiceSearchDao.SearchHit hit : hits) {
+            scores.put(hit.providerId + "/" + hit.serviceId, ServiceSearchRanker.score(hit.matchInfo));
+            serviceIds.add(hit.serviceId);
+            providerIdSet.add(hit.providerId);
+        }
+        List<String> providerIds = new ArrayList<>(providerIdSet);
+
+        Map<String, Provider> providersById = new HashMap<>();
+        for (List<String> chunk : chunks(providerIds)) {
+            for (Provider provider : local.providerDao().getByIds(chunk)) {
+                providersById.put(provider.getId(), provider);
+            }
+        }
+
+        List<ProviderService> matched = new ArrayList<>();
+        for (List<String> chunk : chunks(serviceIds)) {
+            for (ProviderService service : local.providerServiceDao().getByIds(chunk)) {
+                // Same service id can exist under two providers (cloned accounts)
+                if (scores.containsKey(service.getProviderId() + "/" + service.getId())) {
+                    matched.add(service);
+                }
+            }
+        }
+        matched.sort((a, b) -> Double.compare(
+                scores.get(b.getProviderId() + "/" + b.getId()),
+                scores.get(a.getProviderId() + "/" + a.getId())));
+
+        Map<Provider, List<ProviderService>> results = new LinkedHashMap<>();
+        for (ProviderService service : matched) {
+            Provider provider = providersById.get(service.getProviderId());
+            if (provider == null) continue;
+
+            List<ProviderService> list = results.get(provider);
+            if (list == null) {
+                list = new ArrayList<>();
+                results.put(provider, list);
+            }
+            list.add(service);
+        }
+        return results;
+    }
+
+    // Whole index from the cache tables. Disk thread, inside a Room transaction; the
+    // caller records the locale with saveIndexLocale() once the transaction committed.
+    private void rebuildSearchIndex() {
+        FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
+
+        Map<String, String> providerNames = new HashMap<>();
+        for (Provider provider : local.providerDao().getAll()) {
+            providerNames.put(provider.getId(), provider.getFullName());
+        }
+
+        List<ServiceSearchEntry> entries = new ArrayList<>();
+        for (ProviderService service : local.providerServiceDao().getAll()) {
+            entries.add(toSearchEntry(service, providerNames.get(service.getProviderId()), translator));
+        }
+
+        local.serviceSearchDao().deleteAll();
+        local.serviceSearchDao().insertAll(entries);
+    }
+
+    // Only the entries a feed page touched: the page's providers are re-indexed with all
+    // their cached services (a renamed provider updates every one of them), and services
+    // the page dropped lose their entries. Disk thread, inside a Room transaction.
+    private void updateSearchIndex(List<String> providerIds, List<String> removedServiceIds) {
+        FirestoreStringTranslator translator = FirestoreStringTranslator.get(context);
+
+        for (List<String> chunk : chunks(removedServiceIds)) {
+            local.serviceSearchDao().deleteByServiceIds(chunk);
+        }
+
+        List<ServiceSearchEntry> entries = new ArrayList<>();
+        for (List<String> chunk : chunks(providerIds)) {
+            local.serviceSearchDao().deleteByProviderIds(chunk);
+
+            Map<String, String> providerNames = new HashMap<>();
+            for (Provider provider : local.providerDao().getByIds(chunk)) {
+                providerNames.put(provider.getId(), provider.getFullName());
+            }
+            for (ProviderService service : local.providerServiceDao().getByProviderIds(chunk)) {
+                entries.add(toSearchEntry(service, providerNames.get(service.getProviderId()), translator));
+            }
+        }
+        local.serviceSearchDao().insertAll(entries);
+    }
+
+    private static ServiceSearchEntry toSearchEntry(ProviderService service, String providerName,
+                                                    FirestoreStringTranslator translator) {
+        ServiceSearchEntry entry = new ServiceSearchEntry();
+        entry.serviceId = service.getId();
+        entry.providerId = service.getProviderId();
+        entry.title = service.getServiceTitle();
+        entry.description = service.getDescription();
+        entry.area = service.getServiceArea();
+        entry.providerName = providerName;
+
+        String category = service.getCategory();
+        if (category != null && !category.trim().isEmpty()) {
+            entry.category = category + " | " + translator.translateCategory(category);
+        }
+        return entry;
+    }
+
+    private boolean indexMatchesLocale() {
+        return currentLocale().toLanguageTag().equals(indexPrefs.getString(KEY_INDEX_LOCALE, null));
+    }
+
+    private void saveIndexLocale() {
+        indexPrefs.edit().putString(KEY_INDEX_LOCALE, currentLocale().toLanguageTag()).apply();
+    }
+
+    private Locale currentLocale() {
+        return context.getResources().getConfiguration().getLocales().get(0);
+    }
+
+    private static List<List<String>> chunks(List<String> ids) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += SQL_IN_CHUNK) {
+            chunks.add(ids.subList(start, Math.min(start + SQL_IN_CHUNK, ids.size())));
+        }
+        return chunks;
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+    private void readCache(OnCacheReadListener listener) {
+        AppExecutors.diskIO().execute(() -> {
+            Map<Provider, List<ProviderService>> cached = new LinkedHashMap<>();
+            try {
+                Map<String, Provider> providersById = new HashMap<>();
+                for (Provider provider : local.providerDao().getAll()) {
+                    providersById.put(provider.getId(), provider);
+                }
+                // Services come newest first, so providers are ordered by their newest service
+                for (ProviderService service : local.providerServiceDao().getAll()) {
+                    Provider provider = providersById.get(service.getProviderId());
+                    if (provider == null) continue;
+
+                    List<ProviderService> list = cached.get(provider);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        cached.put(provider, list);
+                    }
+                    list.add(service);
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to read local cache", e);
+                cached.clear();
+            }
+            AppExecutors.mainThread().execute(() -> listener.onCacheRead(cached));
+        });
+    }
+
+    // Rows for Room are copies: callers go on to modify the originals (category localization).
+    // Services are keyed by the provider that owns them, which may differ from their providerId field.
+    private static void copyForCache(Map<Provider, List<ProviderService>> data,
+                                     List<Provider> providers, List<ProviderService> services) {
+        for (Map.Entry<Provider, List<ProviderService>> entry : data.entrySet()) {
+            Provider provider = entry.getKey();
+            if (provider.getId() == null) continue;
+
+            Provider providerRow = new Provider();
+            providerRow.setId(provider.getId());
+            providerRow.setFullName(provider.getFullName());
+            providerRow.setEmail(provider.getEmail());
+            providerRow.setPhone(provider.getPhone());
+            providerRow.setAddress(provider.getAddress());
+            providerRow.setRatingSum(provider.getRatingSum());
+            providerRow.setRatingCount(provider.getRatingCount());
+            providers.add(providerRow);
+
+            for (ProviderService service : entry.getValue()) {
+                if (service.getId() == null) continue;
+
+                ProviderService serviceRow = service.copy();
+                serviceRow.setProviderId(provider.getId());
+                services.add(serviceRow);
+            }
+        }
+    }
+
+    private static long timestampOf(DocumentSnapshot doc) {
+        Long timestamp = doc.getLong("timestamp");
+        return timestamp == null ? 0L : timestamp;
+    }
+
+    // =========================================================
+    // CALLBACK INTERFACES
+    // =========================================================
+    public interface OnHomeDataLoadedListener {
+        // fromCache = true for the on-disk copy; a fresh result (fromCache = false) follows
+        void onDataLoaded(Map<Provider, List<ProviderService>> providerServiceMap, boolean fromCache);
+        void onError(String errorMessage);
+    }
+
+    private interface OnCacheReadListener {
+        void onCacheRead(Map<Provider, List<ProviderService>> cached);
+    }
+}
@@ -3,17 +3,41 @@ package edu.sjsu.android.servicesfinder.database;
 import android.content.Context;
 import android.util.Log;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import edu.sjsu.android.servicesfinder.model.Review;
 
 public class ReviewDatabase {
     private static final String TAG = "ReviewDatabase";
+
+    // Rating aggregates kept on each provider document (avg = ratingSum / ratingCount)
+    public static final String FIELD_RATING_SUM = "ratingSum";
+    public static final String FIELD_RATING_COUNT = "ratingCount";
+    // Active reviews saved while the aggregates were still missing (see backfillRatingAggregates)
+    private static final String FIELD_UNAGGREGATED_REVIEWS = "unaggregatedReviews";
+    private static final int BACKFILL_MAX_ATTEMPTS = 3;
+
+    public static final int REVIEW_PAGE_SIZE = 20;
+
     private final FirebaseFirestore db;
 
     public ReviewDatabase() {
@@ -22,13 +46,39 @@ public class ReviewDatabase {
 
     // =========================================================
     // SAVE REVIEW
+    // The review and the provider's rating aggregates are written in one
+    // transaction, so ratingSum/ratingCount always match the stored reviews.
     // =========================================================
     public void saveReview(Review review, OnReviewSaveListener listener) {
-        db.collection("reviews")
-                .add(review)
-                .addOnSuccessListener(docRef -> {
-                    review.setId(docRef.getId());
-                    listener.onSuccess(docRef.getId());
+        DocumentReference reviewRef = db.collection("reviews").document();
+        DocumentReference providerRef = db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                .document(review.getProviderId());
+        boolean countsTowardRating = "Active".equals(review.getStatus());
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot providerDoc = transaction.get(providerRef);
+
+                    transaction.set(reviewRef, review);
+
+                    // Missing provider doc: nothing to aggregate onto (and don't create a stub)
+                    if (countsTowardRating && providerDoc.exists()) {
+                        Double sum = providerDoc.getDouble(FIELD_RATING_SUM);
+                        Long count = providerDoc.getLong(FIELD_RATING_COUNT);
+                        if (sum != null && count != null) {
+                            transaction.update(providerRef,
+                                    FIELD_RATING_SUM, sum + review.getRating(),
+                                    FIELD_RATING_COUNT, count + 1);
+                        } else {
+                            // Not backfilled yet: the backfill counts this review, but must
+                            // see that one arrived while it was reading
+                            transaction.update(providerRef, FIELD_UNAGGREGATED_REVIEWS, FieldValue.increment(1));
+                        }
+                    }
+                    return null;
+                })
+                .addOnSuccessListener(unused -> {
+                    review.setId(reviewRef.getId());
+                    listener.onSuccess(reviewRef.getId());
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Error saving review", e);
@@ -37,36 +87,139 @@ public class ReviewDatabase {
     }
 
     // =========================================================
-    // LOAD REVIEWS FOR A PROVIDER
+    // PAGED REVIEWS FOR A PROVIDER (newest first)
+    // Needs the composite index  reviews: providerId ASC, timestamp DESC
+    // (Firestore prints a link to create it on the first failing query).
+    // Pages continue after the last document of the previous page (cursor).
     // =========================================================
-    public void getReviewsForProvider(String providerId, OnReviewsLoadedListener listener) {
-        Log.e("DEBUG_REVIEW", "Querying reviews for providerId = " + providerId);
-        db.collection("reviews")
+    private Query reviewsOf(String providerId) {
+        return db.collection("reviews")
                 .whereEqualTo("providerId", providerId)
-                //.whereEqualTo("status", "Active")
-                //.orderBy("timestamp", Query.Direction.DESCENDING)
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    List<Review> reviews = new ArrayList<>();
-                    for (QueryDocumentSnapshot doc : querySnapshot) {
-                        Log.e("DEBUG_REVIEW", "Retrieved doc: " + doc.getData());
-                        Review review = doc.toObject(Review.class);
-                        review.setId(doc.getId());
-                        reviews.add(review);
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+    }
+
+    // First page of reviews + the rating summary over ALL reviews. The summary comes from
+    // the provider document's aggregates (one read, fetched alongside the page); providers
+    // not backfilled yet fall back to scanning their active reviews.
+    public void getReviewBundle(String providerId, OnReviewBundleLoadedListener listener) {
+        Task<QuerySnapshot> pageTask = reviewsOf(providerId).limit(REVIEW_PAGE_SIZE).get();
+        Task<DocumentSnapshot> providerTask = db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                .document(providerId)
+                .get();
+
+        Tasks.whenAllSuccess(pageTask, providerTask)
+                .addOnSuccessListener(results -> {
+                    QuerySnapshot page = pageTask.getResult();
+                    List<Review> reviews = toReviews(page);
+                    DocumentSnapshot cursor = lastOf(page);
+                    boolean hasMore = page.size() == REVIEW_PAGE_SIZE;
+
+                    RatingSummary summary = summaryFromProviderDoc(providerTask.getResult());
+                    if (summary != null) {
+                        listener.onReviewBundleLoaded(new ReviewBundle(reviews, summary, cursor, hasMore));
+                        return;
                     }
-                    Log.e("DEBUG_REVIEW", "Fetched " + reviews.size() + " reviews from DB");
-                    listener.onReviewsLoaded(reviews);
+                    computeAverageRatingFromReviews(providerId, new OnRatingCalculatedListener() {
+                        @Override
+                        public void onRatingCalculated(float averageRating, int totalReviews) {
+                            listener.onReviewBundleLoaded(new ReviewBundle(reviews,
+                                    new RatingSummary(averageRating, totalReviews), cursor, hasMore));
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            listener.onError(error);
+                        }
+                    });
                 })
                 .addOnFailureListener(e -> {
-                    Log.e("DEBUG_REVIEW", "Error loading reviews", e);
+                    Log.e(TAG, "Error loading reviews", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
+    // Next page after the given bundle's cursor
+    public void getNextReviewPage(String providerId, ReviewBundle bundle, OnReviewPageLoadedListener listener) {
+        Query query = reviewsOf(providerId).limit(REVIEW_PAGE_SIZE);
+        if (bundle.cursor != null) query = query.startAfter(bundle.cursor);
+
+        query.get()
+                .addOnSuccessListener(page -> listener.onReviewPageLoaded(
+                        toReviews(page), lastOf(page), page.size() == REVIEW_PAGE_SIZE))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading review page", e);
                     listener.onError(e.getMessage());
                 });
     }
 
     // =========================================================
-    // CALCULATE AVERAGE RATING
+    // REAL-TIME TAIL
+    // Streams reviews newer than `newerThan` (the newest one already shown) as they
+    // are added; the first snapshot only holds those that slipped in meanwhile.
+    // The caller removes the registration when the screen goes away.
+    // =========================================================
+    public ListenerRegistration listenForNewReviews(String providerId, long newerThan, OnNewReviewsListener listener) {
+        return db.collection("reviews")
+                .whereEqualTo("providerId", providerId)
+                .whereGreaterThan("timestamp", newerThan)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "New-review listener failed", e);
+                        return;
+                    }
+                    if (snapshot == null) return;
+
+                    List<Review> added = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        if (change.getType() != DocumentChange.Type.ADDED) continue;
+                        Review review = change.getDocument().toObject(Review.class);
+                        review.setId(change.getDocument().getId());
+                        added.add(review);
+                    }
+                    if (!added.isEmpty()) listener.onNewReviews(added);
+                });
+    }
+
+    private static List<Review> toReviews(QuerySnapshot snapshot) {
+        List<Review> reviews = new ArrayList<>();
+        for (QueryDocumentSnapshot doc : snapshot) {
+            Review review = doc.toObject(Review.class);
+            review.setId(doc.getId());
+            reviews.add(review);
+        }
+        return reviews;
+    }
+
+    private static DocumentSnapshot lastOf(QuerySnapshot snapshot) {
+        List<DocumentSnapshot> docs = snapshot.getDocuments();
+        return docs.isEmpty() ? null : docs.get(docs.size() - 1);
+    }
+
+    // =========================================================
+    // AVERAGE RATING
+    // Single provider-document read. Providers that have not been
+    // backfilled yet fall back to scanning their reviews.
     // =========================================================
     public void getAverageRating(String providerId, OnRatingCalculatedListener listener) {
+        db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                .document(providerId)
+                .get()
+                .addOnSuccessListener(doc -> {
+                    RatingSummary summary = summaryFromProviderDoc(doc);
+                    if (summary != null) {
+                        listener.onRatingCalculated(summary.averageRating, summary.totalReviews);
+                    } else {
+                        computeAverageRatingFromReviews(providerId, listener);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error calculating rating", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
+    private void computeAverageRatingFromReviews(String providerId, OnRatingCalculatedListener listener) {
         db.collection("reviews")
                 .whereEqualTo("providerId", providerId)
                 .whereEqualTo("status", "Active")
@@ -95,6 +248,280 @@ public class ReviewDatabase {
                 });
     }
 
+    // =========================================================
+    // AVERAGE RATINGS FOR MANY PROVIDERS (batched)
+    // Reads the provider documents in whereIn chunks of 30 and uses their
+    // aggregates; only providers without aggregates have their reviews scanned.
+    // Every requested ID is present in the result; providers without reviews get (0, 0).
+    // =========================================================
+    public void getAverageRatings(Collection<String> providerIds, OnRatingsCalculatedListener listener) {
+        List<String> ids = new ArrayList<>(providerIds);
+        if (ids.isEmpty()) {
+            listener.onRatingsCalculated(new HashMap<>());
+            return;
+        }
+
+        List<Task<QuerySnapshot>> chunkTasks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += FirestoreHelper.WHERE_IN_LIMIT) {
+            List<String> chunk = ids.subList(start, Math.min(start + FirestoreHelper.WHERE_IN_LIMIT, ids.size()));
+            chunkTasks.add(db.collection(FirestoreHelper.COLLECTION_PROVIDERS)
+                    .whereIn(FieldPath.documentId(), new ArrayList<>(chunk))
+                    .get());
+        }
+
+        Tasks.<QuerySnapshot>whenAllSuccess(chunkTasks)
+                .addOnSuccessListener(snapshots -> {
+                    Map<String, RatingSummary> result = new HashMap<>();
+                    for (QuerySnapshot snapshot : snapshots) {
+                        for (QueryDocumentSnapshot doc : snapshot) {
+                            RatingSummary summary = summaryFromProviderDoc(doc);
+                            if (summary != null) result.put(doc.getId(), summary);
+                        }
+                    }
+
+                    List<String> notAggregated = new ArrayList<>();
+                    for (String id : ids) {
+                        if (!result.containsKey(id)) notAggregated.add(id);
+                    }
+                    if (notAggregated.isEmpty()) {
+                        listener.onRatingsCalculated(result);
+                        return;
+                    }
+
+                    computeAverageRatingsFromReviews(notAggregated, new OnRatingsCalculatedListener() {
+                        @Override
+                        public void onRatingsCalculated(Map<String, RatingSummary> ratingsByProvider) {
+                            result.putAll(ratingsByProvider);
+                            listener.onRatingsCalculated(result);
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            listener.onError(error);
+                        }
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error calculating ratings", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
+    private void computeAverageRatingsFromReviews(List<String> ids, OnRatingsCalculatedListener listener) {
+        List<Task<QuerySnapshot>> chunkTasks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += FirestoreHelper.WHERE_IN_LIMIT) {
+            List<String> chunk = ids.subList(start, Math.min(start + FirestoreHelper.WHERE_IN_LIMIT, ids.size()));
+            chunkTasks.add(db.collection("reviews")
+                    .whereIn("providerId", new ArrayList<>(chunk))
+                    .whereEqualTo("status", "Active")
+                    .get());
+        }
+
+        Tasks.<QuerySnapshot>whenAllSuccess(chunkTasks)
+                .addOnSuccessListener(snapshots -> {
+                    Map<String, double[]> totals = sumActiveRatings(snapshots);
+
+                    Map<String, RatingSummary> result = new HashMap<>();
+                    for (String id : ids) {
+                        double[] total = totals.get(id);
+                        result.put(id, total == null
+                                ? new RatingSummary(0.0f, 0)
+                                : new RatingSummary((float) (total[0] / total[1]), (int) total[1]));
+                    }
+                    listener.onRatingsCalculated(result);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error calculating ratings", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
+    // providerId -> {sum of ratings, number of reviews}
+    private static Map<String, double[]> sumActiveRatings(List<QuerySnapshot> snapshots) {
+        Map<String, double[]> totals = new HashMap<>();
+        for (QuerySnapshot snapshot : snapshots) {
+            for (QueryDocumentSnapshot doc : snapshot) {
+                Review review = doc.toObject(Review.class);
+                if (review.getProviderId() == null) continue;
+
+                double[] total = totals.get(review.getProviderId());
+                if (total == null) {
+                    total = new double[2];
+                    totals.put(review.getProviderId(), total);
+                }
+                total[0] += review.getRating();
+                total[1]++;
+            }
+        }
+        return totals;
+    }
+
+    // null when the provider document carries no aggregates yet
+    private static RatingSummary summaryFromProviderDoc(DocumentSnapshot doc) {
+        if (!doc.exists()) return new RatingSummary(0.0f, 0);
+
+        Double sum = doc.getDouble(FIELD_RATING_SUM);
+        Long count = doc.getLong(FIELD_RATING_COUNT);
+        if (sum == null || count == null) return null;
+
+        return count == 0
+                ? new RatingSummary(0.0f, 0)
+                : new RatingSummary((float) (sum / count), count.intValue());
+    }
+
+    // =========================================================
+    // RATING AGGREGATES BACKFILL (whole catalog, run once; see DataMigrations)
+    // Gives every provider created before ratingSum/ratingCount existed its aggregates,
+    // computed from its active reviews: one query for the providers, one for all active
+    // reviews, then one transaction per provider still missing them (one at a time).
+    // Reviews saved in the meantime bump FIELD_UNAGGREGATED_REVIEWS (see saveReview):
+    // the transaction re-reads the provider and, if that counter moved, that provider's
+    // reviews are read again, so a review landing between the query and the write is
+    // never lost.
+    // =========================================================
+    public void backfillRatingAggregates(OnRatingBackfillListener listener) {
+        Task<QuerySnapshot> providersTask = db.collection(FirestoreHelper.COLLECTION_PROVIDERS).get();
+        Task<QuerySnapshot> reviewsTask = db.collection("reviews")
+                .whereEqualTo("status", "Active")
+                .get();
+
+        Tasks.whenAllSuccess(providersTask, reviewsTask)
+                .onSuccessTask(unused -> {
+                    Map<String, double[]> totals = sumActiveRatings(Collections.singletonList(reviewsTask.getResult()));
+
+                    Task<Integer> updated = Tasks.forResult(0);
+                    for (DocumentSnapshot providerDoc : providersTask.getResult()) {
+                        if (summaryFromProviderDoc(providerDoc) != null) continue;
+
+                        DocumentReference providerRef = providerDoc.getReference();
+                        Long unaggregatedSeen = providerDoc.getLong(FIELD_UNAGGREGATED_REVIEWS);
+                        double[] total = totals.get(providerDoc.getId());
+                        updated = updated.onSuccessTask(count ->
+                                writeAggregates(providerRef, unaggregatedSeen, total)
+                                        .onSuccessTask(result -> result == BackfillResult.STALE
+                                                ? backfillProvider(providerRef, 2)
+                                                : Tasks.forResult(result))
+                                        .onSuccessTask(result -> Tasks.forResult(
+                                                result == BackfillResult.WRITTEN ? count + 1 : count)));
+                    }
+                    return updated;
+                })
+                .addOnSuccessListener(listener::onBackfillComplete)
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Rating backfill failed", e);
+                    listener.onError(e.getMessage());
+                });
+    }
+
+    // One provider whose reviews changed while the pass was reading: its own reviews are read again
+    private Task<BackfillResult> backfillProvider(DocumentReference providerRef, int attempt) {
+        return providerRef.get()
+                .onSuccessTask(providerDoc -> {
+                    if (!providerDoc.exists() || summaryFromProviderDoc(providerDoc) != null) {
+                        return Tasks.forResult(BackfillResult.NOT_NEEDED);
+                    }
+                    final Long unaggregatedSeen = providerDoc.getLong(FIELD_UNAGGREGATED_REVIEWS);
+
+                    return db.collection("reviews")
+                            .whereEqualTo("providerId", providerRef.getId())
+                            .whereEqualTo("status", "Active")
+                            .get()
+                            .onSuccessTask(reviews -> writeAggregates(providerRef, unaggregatedSeen,
+                                    sumActiveRatings(Collections.singletonList(reviews)).get(providerRef.getId())));
+                })
+                .onSuccessTask(result -> {
+                    if (result != BackfillResult.STALE) return Tasks.forResult(result);
+                    if (attempt < BACKFILL_MAX_ATTEMPTS) return backfillProvider(providerRef, attempt + 1);
+                    return Tasks.forException(new IllegalStateException(
+                            "Reviews of " + providerRef.getId() + " kept changing; retried on the next run"));
+                });
+    }
+
+    // Writes the aggregates unless they appeared meanwhile or a review was saved after TOTAL was read
+    private Task<BackfillResult> writeAggregates(DocumentReference providerRef, Long unaggregatedSeen, double[] total) {
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(providerRef);
+            if (!current.exists() || summaryFromProviderDoc(current) != null) {
+                return BackfillResult.NOT_NEEDED;
+            }
+            if (!Objects.equals(unaggregatedSeen, current.getLong(FIELD_UNAGGREGATED_REVIEWS))) {
+                return BackfillResult.STALE;   // a review was saved after the query
+            }
+            transaction.update(providerRef,
+                    FIELD_RATING_SUM, total == null ? 0.0 : total[0],
+                    FIELD_RATING_COUNT, total == null ? 0L : (long) total[1],
+                    FIELD_UNAGGREGATED_REVIEWS, FieldValue.delete());
+            return BackfillResult.WRITTEN;
+        });
+    }
+
+    private enum BackfillResult { WRITTEN, NOT_NEEDED, STALE }
+
+    // =========================================================
+    // RATING SUMMARY (average + number of reviews)
+    // =========================================================
+    public static class RatingSummary {
+        public final float averageRating;
+        public final int totalReviews;
+
+        public RatingSummary(float averageRating, int totalReviews) {
+            this.averageRating = averageRating;
+            this.totalReviews = totalReviews;
+        }
+    }
+
+    // =========================================================
+    // REVIEW BUNDLE (the reviews loaded so far + the provider's rating summary)
+    // Immutable; every change returns a new bundle.
+    // =========================================================
+    public static class ReviewBundle {
+        public final List<Review> reviews;     // newest first, unmodifiable
+        public final RatingSummary summary;    // over all reviews, not just the loaded ones
+        final DocumentSnapshot cursor;         // last loaded page's last document
+        public final boolean hasMore;          // older reviews left to page in
+
+        ReviewBundle(List<Review> reviews, RatingSummary summary, DocumentSnapshot cursor, boolean hasMore) {
+            this.reviews = Collections.unmodifiableList(reviews);
+            this.summary = summary;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+
+        public long newestTimestamp() {
+            return reviews.isEmpty() ? 0 : reviews.get(0).getTimestamp();
+        }
+
+        // Bundle with a new review on top and the running average updated, so the screen
+        // does not have to read everything again. A review already listed (the submitter's
+        // own, also delivered by the real-time tail) is not counted twice.
+        public ReviewBundle plus(Review review) {
+            for (Review existing : reviews) {
+                if (existing.getId() != null && existing.getId().equals(review.getId())) return this;
+            }
+
+            List<Review> merged = new ArrayList<>(reviews.size() + 1);
+            merged.add(review);
+            merged.addAll(reviews);
+            merged.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+
+            RatingSummary mergedSummary = summary;
+            if ("Active".equals(review.getStatus())) {
+                int count = summary.totalReviews + 1;
+                mergedSummary = new RatingSummary(
+                        (summary.averageRating * summary.totalReviews + review.getRating()) / count, count);
+            }
+            return new ReviewBundle(merged, mergedSummary, cursor, hasMore);
+        }
+
+        // Bundle with an older page appended below
+        public ReviewBundle withPage(List<Review> page, DocumentSnapshot pageCursor, boolean pageHasMore) {
+            List<Review> merged = new ArrayList<>(reviews.size() + page.size());
+            merged.addAll(reviews);
+            merged.addAll(page);
+            return new ReviewBundle(merged, summary, pageCursor != null ? pageCursor : cursor, pageHasMore);
+        }
+    }
+
     // =========================================================
     // CALLBACK INTERFACES
     // =========================================================
@@ -103,8 +530,17 @@ public class ReviewDatabase {
         void onError(String error);
     }
 
-    public interface OnReviewsLoadedListener {
-        void onReviewsLoaded(List<Review> reviews);
+    public interface OnReviewPageLoadedListener {
+        void onReviewPageLoaded(List<Review> page, DocumentSnapshot cursor, boolean hasMore);
+        void onError(String error);
+    }
+
+    public interface OnNewReviewsListener {
+        void onNewReviews(List<Review> added);
+    }
+
+    public interface OnReviewBundleLoadedListener {
+        void onReviewBundleLoaded(ReviewBundle bundle);
         void onError(String error);
     }
 
@@ -112,4 +548,15 @@ public class ReviewDatabase {
         void onRatingCalculated(float averageRating, int totalReviews);
         void onError(String error);
     }
+
+    public interface OnRatingsCalculatedListener {
+        void onRatingsCalculated(Map<String, RatingSummary> ratingsByProvider);
+        void onError(String error);
+    }
+
+    public interface OnRatingBackfillListener {
+        // providersUpdated: providers that got aggregates written by this run
+        void onBackfillComplete(int providersUpdated);
+        void onError(String error);
+    }
 }
\ No newline at end of file
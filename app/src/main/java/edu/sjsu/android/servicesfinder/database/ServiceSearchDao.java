@@ -0,0 +1,41 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+import edu.sjsu.android.servicesfinder.model.ServiceSearchEntry;
+
+// Room access to the local full-text search index over the cached services
+@Dao
+public interface ServiceSearchDao {
+
+    // matchinfo 'pcnalx' feeds the BM25 ranking in ServiceSearchRanker
+    @Query("SELECT serviceId, providerId, matchinfo(service_search, 'pcnalx') AS matchInfo "
+            + "FROM service_search WHERE service_search MATCH :matchQuery")
+    List<SearchHit> search(String matchQuery);
+
+    @Insert
+    void insertAll(List<ServiceSearchEntry> entries);
+
+    @Query("DELETE FROM service_search")
+    void deleteAll();
+
+    @Query("DELETE FROM service_search WHERE serviceId IN (:serviceIds)")
+    void deleteByServiceIds(List<String> serviceIds);
+
+    @Query("DELETE FROM service_search WHERE providerId IN (:providerIds)")
+    void deleteByProviderIds(List<String> providerIds);
+
+    @Query("SELECT COUNT(*) FROM service_search")
+    int count();
+
+    // Raw hit; ranked in Java because FTS4 has no built-in ranking function
+    class SearchHit {
+        public String serviceId;
+        public String providerId;
+        public byte[] matchInfo;
+    }
+}
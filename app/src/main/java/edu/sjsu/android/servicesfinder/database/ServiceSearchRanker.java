@@ -0,0 +1,100 @@
+package edu.sjsu.android.servicesfinder.database;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//******************************************************************************************
+// * Query building and BM25 ranking for the local search index (ServiceSearchDao)
+// *
+// * FTS4 has no ranking function, so the score is computed from matchinfo('pcnalx'):
+// *   p = phrases, c = columns, n = rows, a = avg tokens per column, l = tokens per column
+// *   in this row, x = (hits in this row, hits in all rows, rows with a hit) per phrase/column
+//******************************************************************************************
+public final class ServiceSearchRanker {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Same order as the columns of ServiceSearchEntry
+    // (title, description, category, area, providerName, serviceId, providerId)
+    private static final double[] COLUMN_WEIGHTS = {3.0, 1.0, 2.0, 1.0, 2.0, 0.0, 0.0};
+
+    private ServiceSearchRanker() {}
+
+    //******************************************************************************************
+    // "wi-fi rep" -> "wi* fi* rep*": every word must appear, each as a word prefix.
+    // Returns null when the query has no searchable characters.
+    //******************************************************************************************
+    public static String toMatchQuery(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) return null;
+
+        StringBuilder match = new StringBuilder();
+        for (String token : tokens) {
+            if (match.length() > 0) match.append(' ');
+            match.append(token).append('*');
+        }
+        return match.toString();
+    }
+
+    // Lower-cased runs of letters/digits; everything else separates words (like unicode61)
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.isLetterOrDigit(lower.charAt(i))) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) tokens.add(lower.substring(start));
+        return tokens;
+    }
+
+    //******************************************************************************************
+    // BM25 over all phrases and columns, weighted per column. Higher is better.
+    //******************************************************************************************
+    public static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 12) return 0;
+
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+        int rows = buffer.getInt(8);
+
+        int avgOffset = 3;                        // a: one value per column
+        int lenOffset = avgOffset + columns;      // l: one value per column
+        int hitsOffset = lenOffset + columns;     // x: 3 values per phrase/column
+        if (matchInfo.length < (hitsOffset + 3 * phrases * columns) * 4) return 0;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                double weight = COLUMN_WEIGHTS[column];
+                if (weight == 0) continue;
+
+                int x = hitsOffset + 3 * (column + phrase * columns);
+                int hitsInRow = buffer.getInt(4 * x);
+                if (hitsInRow == 0) continue;
+                int rowsWithHit = buffer.getInt(4 * (x + 2));
+
+                double avgLength = Math.max(1, buffer.getInt(4 * (avgOffset + column)));
+                double length = buffer.getInt(4 * (lenOffset + column));
+
+                // Lucene-style idf, never negative on tiny datasets
+                double idf = Math.log(1 + (rows - rowsWithHit + 0.5) / (rowsWithHit + 0.5));
+                double tf = hitsInRow * (K1 + 1) / (hitsInRow + K1 * (1 - B + B * length / avgLength));
+                score += weight * idf * tf;
+            }
+        }
+        return score;
+    }
+}
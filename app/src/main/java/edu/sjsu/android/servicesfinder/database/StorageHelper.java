@@ -1,18 +1,14 @@
 package edu.sjsu.android.servicesfinder.database;
 
-import android.app.ProgressDialog;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
 import android.net.Uri;
-import android.widget.Toast;
-
-import androidx.appcompat.app.AlertDialog;
-
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
+import android.os.Build;
+import android.util.Log;
 
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
@@ -23,147 +19,197 @@ import edu.sjsu.android.servicesfinder.R;
  * StorageHelper
  *
  * Handles:
- *  - Uploading image files to Firebase Storage
- *  - Image compression to reduce file size and bandwidth
- *  - Returning a download URL when finished
+ *  - Image compression to reduce file size and bandwidth (subsampled decode, EXIF-aware)
+ *  - Three WebP variants per image: original, medium (detail screen), thumbnail (cards)
+ *  - Content-addressed Storage paths of those variants
  *  - Translating errors into user-friendly messages
+ * The uploads themselves run through ImageUploadQueue (persistent, resumable).
  **********************************************************************************************************/
 public class StorageHelper {
 
     private static final String TAG = "StorageHelper";
 
-    // Image compression settings
-    private static final int MAX_IMAGE_WIDTH = 1920;
+    // Image compression settings (each variant fits inside its box, aspect ratio kept)
+    private static final int MAX_IMAGE_WIDTH = 1920;      // original
     private static final int MAX_IMAGE_HEIGHT = 1080;
-    private static final int JPEG_QUALITY = 85; // 0-100, higher = better quality but larger size
-
-    // Root reference to Firebase Storage bucket
-    private static final StorageReference storageRef =
-            FirebaseStorage.getInstance().getReference();
-
-    // =======================================================================================
-    // Uploads an image file to Firebase Storage with compression.
-    // =======================================================================================
-
-    public static void uploadImageToFirebase(Context context, Uri imageUri,
-                                             String providerId, OnSuccessListener<String> callback) {
-
-        if (imageUri == null) {
-            Toast.makeText(context, context.getString(R.string.error_no_image_selected), Toast.LENGTH_SHORT).show();
-            callback.onSuccess(null);
-            return;
-        }
+    private static final int MEDIUM_MAX_SIZE = 1080;      // detail screen (full width, 250dp tall)
+    private static final int THUMBNAIL_MAX_SIZE = 640;    // 80dp card, short side >= 320px
+    private static final int WEBP_QUALITY = 80;           // 0-100, higher = better quality but larger size
+    private static final int THUMBNAIL_WEBP_QUALITY = 70;
+
+    // Variants, in upload order; file suffixes under service_images/{providerId}/
+    static final int VARIANT_ORIGINAL = 0;
+    static final int VARIANT_MEDIUM = 1;
+    static final int VARIANT_THUMBNAIL = 2;
+    static final int VARIANT_COUNT = 3;
+    private static final String[] VARIANT_SUFFIXES = {".webp", "_medium.webp", "_thumb.webp"};
+
+    // Storage folder holding all of one provider's service images
+    static String providerImagesPath(String providerId) {
+        return "service_images/" + providerId;
+    }
 
-        // Show progress dialog
-        ProgressDialog dialog = new ProgressDialog(context);
-        dialog.setMessage(context.getString(R.string.message_uploading_image));
-        dialog.setCancelable(false);
-        dialog.show();
-
-        // Compress image in background thread
-        new Thread(() -> {
-            try {
-                byte[] compressedData = compressImage(context, imageUri);
-
-                // Upload compressed image on main thread
-                context.getMainLooper().getQueue().addIdleHandler(() -> {
-                    uploadCompressedImage(context, compressedData, providerId, callback, dialog);
-                    return false;
-                });
-            } catch (Exception e) {
-                context.getMainLooper().getQueue().addIdleHandler(() -> {
-                    dialog.dismiss();
-                    String errorMsg = "Failed to compress image: " + e.getMessage();
-                    new AlertDialog.Builder(context)
-                            .setTitle(context.getString(R.string.dialog_title_upload_failed))
-                            .setMessage(context.getString(R.string.dialog_message_continue_without_image, errorMsg))
-                            .setPositiveButton(context.getString(R.string.action_continue), (d, w) -> callback.onSuccess(null))
-                            .setNegativeButton(context.getString(R.string.action_cancel), null)
-                            .show();
-                    return false;
-                });
-            }
-        }).start();
+    // Storage path of one variant: service_images/{providerId}/{hash}[_medium|_thumb].webp
+    // The name is the content hash of the compressed original, so the same picture always
+    // maps to the same objects (and the same download URLs, which CDN and Glide cache)
+    static String variantPath(String providerId, String hash, int variant) {
+        return providerImagesPath(providerId) + "/" + hash + VARIANT_SUFFIXES[variant];
     }
 
     // =======================================================================================
     // Compresses image to reduce file size before upload
+    // Memory stays bounded whatever the source size:
+    //  1. read only the dimensions (inJustDecodeBounds) and the EXIF orientation
+    //  2. decode with the largest power-of-two inSampleSize that keeps the image at least as
+    //     large as the target box, so the decoded bitmap is under 4x the target's pixels
+    //     (~33 MB ARGB for 1920x1080) instead of the full photo (~190 MB for 48 MP)
+    //  3. one matrix pass scales to the exact target size and applies the EXIF rotation/flip
+    //  4. medium and thumbnail are scaled down from that result, each encoded as WebP
     // =======================================================================================
-    private static byte[] compressImage(Context context, Uri imageUri) throws Exception {
-        InputStream inputStream = context.getContentResolver().openInputStream(imageUri);
-        Bitmap originalBitmap = BitmapFactory.decodeStream(inputStream);
-        if (inputStream != null) inputStream.close();
-
-        if (originalBitmap == null) {
+    static ImageVariants compressImage(Context context, Uri imageUri) throws Exception {
+        ContentResolver resolver = context.getContentResolver();
+
+        // 1. Bounds and orientation only, no pixels
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream inputStream = resolver.openInputStream(imageUri)) {
+            BitmapFactory.decodeStream(inputStream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new Exception("Failed to decode image");
+        }
+        int orientation = readExifOrientation(resolver, imageUri);
+        boolean swapsSides = orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270
+                || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+
+        // Target size of the upright image, maintaining aspect ratio
+        int uprightWidth = swapsSides ? bounds.outHeight : bounds.outWidth;
+        int uprightHeight = swapsSides ? bounds.outWidth : bounds.outHeight;
+        float scale = Math.min(1.0f, Math.min(
+                (float) MAX_IMAGE_WIDTH / uprightWidth,
+                (float) MAX_IMAGE_HEIGHT / uprightHeight
+        ));
+        int targetWidth = Math.max(1, Math.round(uprightWidth * scale));
+        int targetHeight = Math.max(1, Math.round(uprightHeight * scale));
+
+        // 2. Subsampled decode
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = calculateInSampleSize(uprightWidth, uprightHeight, targetWidth, targetHeight);
+        Bitmap sampledBitmap;
+        try (InputStream inputStream = resolver.openInputStream(imageUri)) {
+            sampledBitmap = BitmapFactory.decodeStream(inputStream, null, decode);
+        }
+        if (sampledBitmap == null) {
             throw new Exception("Failed to decode image");
         }
 
-        // Calculate new dimensions while maintaining aspect ratio
-        int width = originalBitmap.getWidth();
-        int height = originalBitmap.getHeight();
-        float scale = Math.min(
-                (float) MAX_IMAGE_WIDTH / width,
-                (float) MAX_IMAGE_HEIGHT / height
-        );
+        // 3. Exact scale + EXIF orientation in a single pass
+        int sampledUprightWidth = swapsSides ? sampledBitmap.getHeight() : sampledBitmap.getWidth();
+        int sampledUprightHeight = swapsSides ? sampledBitmap.getWidth() : sampledBitmap.getHeight();
+        Matrix matrix = orientationMatrix(orientation);
+        matrix.postScale((float) targetWidth / sampledUprightWidth, (float) targetHeight / sampledUprightHeight);
 
-        // Only scale down if image is larger than max dimensions
-        if (scale < 1.0f) {
-            width = Math.round(width * scale);
-            height = Math.round(height * scale);
+        Bitmap resizedBitmap = matrix.isIdentity() ? sampledBitmap : Bitmap.createBitmap(
+                sampledBitmap, 0, 0, sampledBitmap.getWidth(), sampledBitmap.getHeight(), matrix, true);
+        if (resizedBitmap != sampledBitmap) {
+            sampledBitmap.recycle(); // Free memory
         }
 
-        // Resize bitmap
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(originalBitmap, width, height, true);
-        originalBitmap.recycle(); // Free memory
+        // 4. Variants, largest first; each smaller one is scaled from the previous
+        byte[] original = encodeWebp(resizedBitmap, WEBP_QUALITY);
+        Bitmap mediumBitmap = scaleToFit(resizedBitmap, MEDIUM_MAX_SIZE, MEDIUM_MAX_SIZE);
+        if (mediumBitmap != resizedBitmap) resizedBitmap.recycle(); // Free memory
+        byte[] medium = encodeWebp(mediumBitmap, WEBP_QUALITY);
+        Bitmap thumbnailBitmap = scaleToFit(mediumBitmap, THUMBNAIL_MAX_SIZE, THUMBNAIL_MAX_SIZE);
+        if (thumbnailBitmap != mediumBitmap) mediumBitmap.recycle();
+        byte[] thumbnail = encodeWebp(thumbnailBitmap, THUMBNAIL_WEBP_QUALITY);
+        thumbnailBitmap.recycle();
+
+        return new ImageVariants(original, medium, thumbnail);
+    }
 
-        // Compress to JPEG with quality setting
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        resizedBitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
-        resizedBitmap.recycle(); // Free memory
+    // Returns the same bitmap when it already fits
+    private static Bitmap scaleToFit(Bitmap source, int maxWidth, int maxHeight) {
+        float scale = Math.min(
+                (float) maxWidth / source.getWidth(),
+                (float) maxHeight / source.getHeight()
+        );
+        if (scale >= 1.0f) return source;
+        return Bitmap.createScaledBitmap(source,
+                Math.max(1, Math.round(source.getWidth() * scale)),
+                Math.max(1, Math.round(source.getHeight() * scale)), true);
+    }
 
+    @SuppressWarnings("deprecation")
+    private static byte[] encodeWebp(Bitmap bitmap, int quality) {
+        // WEBP_LOSSY exists from API 30; before that WEBP is the lossy encoder at quality < 100
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        bitmap.compress(format, quality, outputStream);
         return outputStream.toByteArray();
     }
 
-    // =======================================================================================
-    // Uploads compressed image bytes to Firebase Storage
-    // =======================================================================================
-    private static void uploadCompressedImage(Context context, byte[] imageData,
-                                              String providerId, OnSuccessListener<String> callback,
-                                              ProgressDialog dialog) {
-        // File path: /service_images/{providerId}/{timestamp}.jpg
-        String fileName = "service_images/" + providerId + "/" + System.currentTimeMillis() + ".jpg";
-        StorageReference fileRef = storageRef.child(fileName);
-
-        // Upload compressed byte array
-        UploadTask uploadTask = fileRef.putBytes(imageData);
-        uploadTask.addOnSuccessListener(taskSnapshot -> {
-                    fileRef.getDownloadUrl().addOnSuccessListener(downloadUri -> {
-                        dialog.dismiss();
-                        Toast.makeText(context, context.getString(R.string.success_image_uploaded), Toast.LENGTH_SHORT).show();
-                        callback.onSuccess(downloadUri.toString());
-                    });
-                })
-                .addOnFailureListener(e -> {
-                    dialog.dismiss();
-                    String errorMsg = getImageUploadErrorMessage(context, e);
-                    new AlertDialog.Builder(context)
-                            .setTitle(context.getString(R.string.dialog_title_upload_failed))
-                            .setMessage(context.getString(R.string.dialog_message_continue_without_image, errorMsg))
-                            .setPositiveButton(context.getString(R.string.action_continue), (d, w) -> callback.onSuccess(null))
-                            .setNegativeButton(context.getString(R.string.action_cancel), null)
-                            .show();
-                })
-                .addOnProgressListener(snapshot -> {
-                    double progress = (100.0 * snapshot.getBytesTransferred())
-                            / snapshot.getTotalByteCount();
-                    dialog.setMessage(context.getString(R.string.message_uploading_image_progress, (int) progress));
-                });
+    // Largest power of two that keeps both sides at or above the target size
+    private static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    // Camera photos are often stored sideways with an EXIF tag saying how to turn them
+    private static int readExifOrientation(ContentResolver resolver, Uri imageUri) {
+        try (InputStream inputStream = resolver.openInputStream(imageUri)) {
+            if (inputStream == null) return ExifInterface.ORIENTATION_NORMAL;
+            return new ExifInterface(inputStream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (Exception e) {
+            // No or unreadable EXIF (e.g. PNG): keep the image as decoded
+            Log.w(TAG, "Could not read EXIF orientation", e);
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static Matrix orientationMatrix(int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                break;
+        }
+        return matrix;
     }
 
     // =======================================================================================
     // Converts confusing Firebase exceptions into friendly sentences.
     // =======================================================================================
-    private static String getImageUploadErrorMessage(Context context, Exception e) {
+    static String getImageUploadErrorMessage(Context context, Exception e) {
         String message = e.getMessage();
         if (message == null) return context.getString(R.string.error_upload_unknown);
         if (message.contains("permission") || message.contains("PERMISSION_DENIED"))
@@ -177,4 +223,30 @@ public class StorageHelper {
         return context.getString(R.string.error_upload_failed, message);
     }
 
+    // =======================================================================================
+    // Variant bytes (before upload) and download URLs (after upload)
+    // =======================================================================================
+    static final class ImageVariants {
+        private final byte[][] bytes;   // indexed by VARIANT_*
+
+        ImageVariants(byte[] original, byte[] medium, byte[] thumbnail) {
+            this.bytes = new byte[][]{original, medium, thumbnail};
+        }
+
+        byte[] get(int variant) {
+            return bytes[variant];
+        }
+    }
+
+    public static final class ImageUrls {
+        public final String originalUrl;    // -> ProviderService.imageUrl
+        public final String mediumUrl;      // -> ProviderService.mediumImageUrl
+        public final String thumbnailUrl;   // -> ProviderService.thumbnailUrl
+
+        public ImageUrls(String originalUrl, String mediumUrl, String thumbnailUrl) {
+            this.originalUrl = originalUrl;
+            this.mediumUrl = mediumUrl;
+            this.thumbnailUrl = thumbnailUrl;
+        }
+    }
 }
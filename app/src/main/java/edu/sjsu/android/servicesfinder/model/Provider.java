@@ -1,13 +1,25 @@
 package edu.sjsu.android.servicesfinder.model;
 
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+// Also cached locally by Room (see database.AppDatabase); the password never is.
+@Entity(tableName = "providers")
 public class Provider {
 
+    @PrimaryKey
+    @NonNull
     private String id;        // Firebase UID
     private String fullName;
     private String email;
     private String address;
     private String phone;
+    @Ignore
     private String password;  // (demo only!)
+    private Double ratingSum;    // sum of active review ratings, maintained by ReviewDatabase
+    private Long ratingCount;    // number of active reviews; null until aggregates are backfilled
 
     public Provider() {}
 
@@ -58,4 +70,20 @@ public class Provider {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    public Double getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(Double ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public Long getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(Long ratingCount) {
+        this.ratingCount = ratingCount;
+    }
 }
@@ -1,16 +1,32 @@
 package edu.sjsu.android.servicesfinder.model;
 
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+
+import com.google.firebase.firestore.Exclude;
+
+import java.util.List;
+
+// Also cached locally by Room (see database.AppDatabase), keyed by owning provider + service id
+@Entity(tableName = "provider_services", primaryKeys = {"providerId", "id"})
 public class ProviderService {
+    @NonNull
     private String id;
+    @NonNull
     private String providerId;
     private String serviceTitle;
     private String description;
     private String pricing;
-    private String category;
+    private String category;                 // English, "Cat: Svc1, Svc2 | Cat2" (as stored)
+    @Ignore
+    private ServiceCategory parsedCategory = ServiceCategory.EMPTY;   // parsed from category
     private String serviceArea;
     private String availability;
     private String contactPreference;
-    private String imageUrl;
+    private String imageUrl;                 // original (max 1920x1080)
+    private String mediumImageUrl;           // detail screen variant (see StorageHelper)
+    private String thumbnailUrl;             // card variant
     private long timestamp;
     private String status;   // e.g., "Active" or "Inactive"
     private double rating;   // average rating (for future reviews)
@@ -36,7 +52,20 @@ public class ProviderService {
     public void setPricing(String pricing) { this.pricing = pricing; }
 
     public String getCategory() { return category; }
-    public void setCategory(String category) { this.category = category; }
+    public void setCategory(String category) {
+        this.category = category;
+        this.parsedCategory = ServiceCategory.parse(category);
+    }
+
+    // Parsed once in setCategory; not a Firestore field
+    @Exclude
+    public ServiceCategory getParsedCategory() { return parsedCategory; }
+
+    // Denormalized for server-side category filtering: written with every save/update
+    // as the "categoryKeys" array field, never read back (derived from category)
+    public List<String> getCategoryKeys() { return parsedCategory.keys(); }
+    // No-op: lets toObject() read the stored array back without a "no setter" warning
+    public void setCategoryKeys(List<String> ignored) {}
 
     public String getServiceArea() { return serviceArea; }
     public void setServiceArea(String serviceArea) { this.serviceArea = serviceArea; }
@@ -50,6 +79,21 @@ public class ProviderService {
     public String getImageUrl() { return imageUrl; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
 
+    public String getMediumImageUrl() { return mediumImageUrl; }
+    public void setMediumImageUrl(String mediumImageUrl) { this.mediumImageUrl = mediumImageUrl; }
+
+    public String getThumbnailUrl() { return thumbnailUrl; }
+    public void setThumbnailUrl(String thumbnailUrl) { this.thumbnailUrl = thumbnailUrl; }
+
+    // Smallest image fit for a card; services saved before the variants existed only have imageUrl
+    @Exclude
+    public String getCardImageUrl() { return isSet(thumbnailUrl) ? thumbnailUrl : imageUrl; }
+
+    @Exclude
+    public String getDetailImageUrl() { return isSet(mediumImageUrl) ? mediumImageUrl : imageUrl; }
+
+    private static boolean isSet(String url) { return url != null && !url.isEmpty(); }
+
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     public String getStatus() { return status; }
@@ -58,4 +102,25 @@ public class ProviderService {
     public double getRating() { return rating; }
     public void setRating(double rating) { this.rating = rating; }
 
+    // Field-by-field copy, for callers that must not modify a shared instance
+    public ProviderService copy() {
+        ProviderService copy = new ProviderService();
+        copy.id = id;
+        copy.providerId = providerId;
+        copy.serviceTitle = serviceTitle;
+        copy.description = description;
+        copy.pricing = pricing;
+        copy.category = category;
+        copy.parsedCategory = parsedCategory;   // immutable, safe to share
+        copy.serviceArea = serviceArea;
+        copy.availability = availability;
+        copy.contactPreference = contactPreference;
+        copy.imageUrl = imageUrl;
+        copy.mediumImageUrl = mediumImageUrl;
+        copy.thumbnailUrl = thumbnailUrl;
+        copy.timestamp = timestamp;
+        copy.status = status;
+        copy.rating = rating;
+        return copy;
+    }
 }
@@ -0,0 +1,154 @@
+package edu.sjsu.android.servicesfinder.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* ***********************************************************************************************
+ * Parsed, immutable form of a service's category string
+ *   "Cleaning & Maintenance: Deep Cleaning, Air Filter Repair | Plumbing"
+ *   -> [ Cleaning & Maintenance -> [Deep Cleaning, Air Filter Repair], Plumbing -> [] ]
+ * Built once when the string is set on ProviderService (Firestore, Room or code), so nothing
+ * downstream has to split the string again. Category and service IDs are the English names,
+ * interned so equal names share one String instance across all services.
+ *************************************************************************************************/
+public final class ServiceCategory {
+
+    public static final ServiceCategory EMPTY = new ServiceCategory(Collections.emptyList());
+
+    private static final Map<String, String> INTERNED = new ConcurrentHashMap<>();
+
+    private final List<Entry> entries;
+
+    private ServiceCategory(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    // =========================================================
+    // PARSE / FORMAT
+    // =========================================================
+    public static ServiceCategory parse(String raw) {
+        if (raw == null || raw.trim().isEmpty()) return EMPTY;
+
+        List<Entry> entries = new ArrayList<>();
+        for (String part : raw.split("\\|")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+
+            int colon = part.indexOf(':');
+            if (colon < 0) {
+                entries.add(new Entry(intern(part), Collections.emptyList()));
+                continue;
+            }
+
+            Set<String> services = new LinkedHashSet<>();
+            for (String svc : part.substring(colon + 1).split(",")) {
+                svc = svc.trim();
+                if (!svc.isEmpty()) services.add(intern(svc));
+            }
+            entries.add(new Entry(intern(part.substring(0, colon).trim()),
+                    Collections.unmodifiableList(new ArrayList<>(services))));
+        }
+        return entries.isEmpty() ? EMPTY : new ServiceCategory(Collections.unmodifiableList(entries));
+    }
+
+    // Same "Cat: Svc1, Svc2 | Cat2" layout the string was parsed from
+    public String format() {
+        List<String> parts = new ArrayList<>();
+        for (Entry entry : entries) {
+            parts.add(entry.services.isEmpty()
+                    ? entry.categoryId
+                    : entry.categoryId + ": " + String.join(", ", entry.services));
+        }
+        return String.join(" | ", parts);
+    }
+
+    private static String intern(String value) {
+        String existing = INTERNED.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    // =========================================================
+    // QUERIES
+    // =========================================================
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public Entry find(String categoryId) {
+        for (Entry entry : entries) {
+            if (entry.categoryId.equals(categoryId)) return entry;
+        }
+        return null;
+    }
+
+    // True when the provider picked at least one service under this category
+    public boolean hasServicesIn(String categoryId) {
+        Entry entry = find(categoryId);
+        return entry != null && entry.hasServices();
+    }
+
+    // Category IDs the provider picked at least one service under; stored on the
+    // service document as "categoryKeys" so chips can filter with whereArrayContains
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.hasServices() && !keys.contains(entry.categoryId)) keys.add(entry.categoryId);
+        }
+        return keys;
+    }
+
+    // What cards and the detail screen show: the categories that have services,
+    // or just the first category when none has
+    public ServiceCategory primary() {
+        List<Entry> withServices = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.hasServices()) withServices.add(entry);
+        }
+        if (!withServices.isEmpty()) {
+            return withServices.size() == entries.size()
+                    ? this : new ServiceCategory(Collections.unmodifiableList(withServices));
+        }
+        return entries.size() <= 1 ? this : new ServiceCategory(Collections.singletonList(entries.get(0)));
+    }
+
+    // Mutable category -> services copy, in the shape the dropdown and translator work with
+    public Map<String, Set<String>> toSelectionMap() {
+        Map<String, Set<String>> map = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            map.put(entry.categoryId, new LinkedHashSet<>(entry.services));
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    // =========================================================
+    // ENTRY: one category with the services picked under it
+    // =========================================================
+    public static final class Entry {
+        public final String categoryId;       // English category name
+        public final List<String> services;   // English service names, unmodifiable
+
+        Entry(String categoryId, List<String> services) {
+            this.categoryId = categoryId;
+            this.services = services;
+        }
+
+        public boolean hasServices() {
+            return !services.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package edu.sjsu.android.servicesfinder.model;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+// One row per cached service in the local full-text search index (see database.ServiceSearchDao).
+// The column order is the order matchinfo() reports them in, which the ranking relies on.
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61, notIndexed = {"serviceId", "providerId"})
+@Entity(tableName = "service_search")
+public class ServiceSearchEntry {
+    public String title;
+    public String description;
+    public String category;       // English category string + its localized rendering
+    public String area;
+    public String providerName;
+    public String serviceId;
+    public String providerId;
+
+    public ServiceSearchEntry() {}
+}
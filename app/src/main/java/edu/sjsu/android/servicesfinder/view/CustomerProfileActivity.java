@@ -8,11 +8,15 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
-import java.util.HashMap;
+import com.google.android.gms.tasks.CancellationToken;
+
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 import edu.sjsu.android.servicesfinder.R;
+import edu.sjsu.android.servicesfinder.controller.CancellationScope;
+import edu.sjsu.android.servicesfinder.controller.FavoritesCache;
 import edu.sjsu.android.servicesfinder.controller.ServiceCardAdapter;
 import edu.sjsu.android.servicesfinder.controller.SessionManager;
 import edu.sjsu.android.servicesfinder.database.CustomerDatabase;
@@ -36,6 +40,8 @@ public class CustomerProfileActivity extends AppCompatActivity implements Servic
     private ProviderServiceDatabase providerServiceDatabase;
     private ServiceCardAdapter serviceAdapter;
     private String customerId;
+    private CancellationScope favoritesRequests;   // a newer load (or leaving) drops older chunks
+    private boolean favoritesShown = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,6 +56,7 @@ public class CustomerProfileActivity extends AppCompatActivity implements Servic
 
         customerDatabase = new CustomerDatabase(this);
         providerServiceDatabase = new ProviderServiceDatabase(this);
+        favoritesRequests = CancellationScope.forLifecycle(this);
 
         customerId = SessionManager.getCustomerId(this);
 
@@ -106,6 +113,7 @@ public class CustomerProfileActivity extends AppCompatActivity implements Servic
             @Override
             public void onSuccess(Customer customer) {
                 displayCustomerInfo(customer);
+                FavoritesCache.get().setFavorites(customerId, customer.getFavoriteProviders());
                 loadFavoriteServices(customer.getFavoriteProviders());
             }
 
@@ -139,33 +147,42 @@ public class CustomerProfileActivity extends AppCompatActivity implements Servic
             return;
         }
 
-        // Load all providers with services
-        providerServiceDatabase.getAllProvidersWithServices(this, new ProviderServiceDatabase.OnProvidersWithServicesLoadedListener() {
+        // Only the favorite providers are read; chunks are shown as they arrive
+        final CancellationToken token = favoritesRequests.next();
+        favoritesShown = false;
+
+        providerServiceDatabase.getFavoriteProvidersWithServices(this, new LinkedHashSet<>(favoriteProviderIds),
+                new ProviderServiceDatabase.OnFavoritesLoadedListener() {
             @Override
-            public void onSuccess(Map<Provider, List<ProviderService>> allProvidersMap) {
-                // Filter to only favorite providers
-                Map<Provider, List<ProviderService>> favoriteProvidersMap = new HashMap<>();
-
-                for (Map.Entry<Provider, List<ProviderService>> entry : allProvidersMap.entrySet()) {
-                    if (favoriteProviderIds.contains(entry.getKey().getId())) {
-                        favoriteProvidersMap.put(entry.getKey(), entry.getValue());
-                    }
+            public void onChunkLoaded(Map<Provider, List<ProviderService>> chunk) {
+                if (token.isCancellationRequested() || binding == null || chunk.isEmpty()) return;
+
+                if (!favoritesShown) {
+                    favoritesShown = true;
+                    displayFavorites(chunk);
+                } else {
+                    serviceAdapter.appendData(chunk);
                 }
+            }
 
-                if (favoriteProvidersMap.isEmpty()) {
+            @Override
+            public void onComplete() {
+                if (token.isCancellationRequested() || binding == null) return;
+                if (!favoritesShown) {
                     showEmptyState();
-                } else {
-                    displayFavorites(favoriteProvidersMap);
                 }
             }
 
             @Override
             public void onError(String errorMessage) {
+                if (token.isCancellationRequested() || binding == null) return;
                 hideLoading();
                 RetryDialog.show(CustomerProfileActivity.this,
                         "Failed to load favorites: " + errorMessage,
                         CustomerProfileActivity.this::loadCustomerProfile);
-                showEmptyState();
+                if (!favoritesShown) {
+                    showEmptyState();
+                }
             }
         });
     }
@@ -214,7 +231,7 @@ public class CustomerProfileActivity extends AppCompatActivity implements Servic
         intent.putExtra("serviceArea", service.getServiceArea());
         intent.putExtra("serviceAvailability", service.getAvailability());
         intent.putExtra("serviceContactPreference", service.getContactPreference());
-        intent.putExtra("serviceImageUrl", service.getImageUrl());
+        intent.putExtra("serviceImageUrl", service.getDetailImageUrl());
 
         intent.putExtra("providerName", provider.getFullName());
         intent.putExtra("providerPhone", provider.getPhone());
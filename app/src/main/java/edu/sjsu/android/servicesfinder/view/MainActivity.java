@@ -10,22 +10,32 @@
     import android.view.View;
     import android.widget.Toast;
 
+    import androidx.annotation.NonNull;
     import androidx.annotation.Nullable;
     import androidx.appcompat.app.AppCompatActivity;
     import androidx.recyclerview.widget.LinearLayoutManager;
+    import androidx.recyclerview.widget.RecyclerView;
 
     import com.google.android.material.chip.Chip;
 
     import java.util.ArrayList;
     import java.util.HashMap;
+    import java.util.HashSet;
     import java.util.List;
     import java.util.Map;
+    import java.util.Set;
 
     import edu.sjsu.android.servicesfinder.R;
+    import edu.sjsu.android.servicesfinder.controller.DataMigrations;
     import edu.sjsu.android.servicesfinder.controller.HomeController;
+    import edu.sjsu.android.servicesfinder.controller.ProviderRatingCache;
+    import edu.sjsu.android.servicesfinder.controller.RefreshPolicy;
     import edu.sjsu.android.servicesfinder.controller.ServiceCardAdapter;
+    import edu.sjsu.android.servicesfinder.controller.ServiceSorter;
+    import edu.sjsu.android.servicesfinder.controller.ServiceSorter.SortOption;
     import edu.sjsu.android.servicesfinder.controller.SessionManager;
-    import edu.sjsu.android.servicesfinder.database.ReviewDatabase;
+    import edu.sjsu.android.servicesfinder.database.ImageUploadQueue;
+    import edu.sjsu.android.servicesfinder.database.ProviderServiceDatabase;
     import edu.sjsu.android.servicesfinder.databinding.ActivityMainBinding;
     import edu.sjsu.android.servicesfinder.model.Provider;
     import edu.sjsu.android.servicesfinder.model.ProviderService;
@@ -33,10 +43,14 @@
 
     public class MainActivity extends AppCompatActivity
             implements HomeController.HomeControllerListener,
-
-            ServiceCardAdapter.OnServiceClickListener {
+            ServiceCardAdapter.OnServiceClickListener,
+            ProviderRatingCache.OnRatingsResolvedListener {
 
         private static final int SEARCH_DELAY_MS = 300;
+        // Start loading the next feed page when this many cards are left below the last visible one
+        private static final int FEED_PREFETCH_DISTANCE = 5;
+        // Returning to the screen refreshes in the background once the list is this old
+        private static final long HOME_REFRESH_TTL_MS = 5 * 60_000;
 
         private ActivityMainBinding binding;
         private HomeController homeController;
@@ -50,6 +64,16 @@
         private String currentSearchQuery = "";
         private String currentCategoryFilter = "";   // ALWAYS ENGLISH KEY
         private SortOption currentSortOption = SortOption.MOST_RECENT;
+        private boolean feedMode = false;   // true while the list is the paged, unfiltered feed
+
+        // Sorting runs in the background; currentResults is the unsorted non-feed result set,
+        // re-sorted in place when only the sort order changes
+        private final ServiceSorter sorter = new ServiceSorter();
+        private List<ServiceCardAdapter.ServiceItem> currentResults;
+
+        // Stale-while-revalidate: onResume keeps the list and refreshes it quietly when due
+        private final RefreshPolicy refreshPolicy = new RefreshPolicy(HOME_REFRESH_TTL_MS);
+        private boolean revalidating = false;   // a failed quiet refresh keeps the list
 
         @Override
         protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -63,8 +87,9 @@
 
             if (getSupportActionBar() != null) getSupportActionBar().hide();
 
-            homeController = new HomeController(this);
+            homeController = new HomeController(this, this);
             homeController.setListener(this);
+            ProviderRatingCache.get().addListener(this);
 
             searchHandler = new Handler(Looper.getMainLooper());
 
@@ -77,7 +102,12 @@
             setupSortButton();
             setupLanguageButton();
             showLoading();
-            homeController.loadAllProvidersWithServices();
+            loadHomeFeed();
+
+            // Service images still waiting to upload from an earlier session
+            ImageUploadQueue.get(this).resume();
+            // One-time catalog backfills (claimed by a single client, see DataMigrations)
+            DataMigrations.runPending(this);
         }
 
         // ============================================================
@@ -104,6 +134,27 @@
             serviceAdapter = new ServiceCardAdapter(this);
             serviceAdapter.setOnServiceClickListener(this);
             binding.servicesRecyclerView.setAdapter(serviceAdapter);
+
+            // Infinite scroll: fetch the next feed page as the user nears the end of the list
+            binding.servicesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    if (dy > 0) maybeLoadNextFeedPage();
+                }
+            });
+        }
+
+        private void maybeLoadNextFeedPage() {
+            if (!feedMode || !homeController.feedHasMore() || homeController.isFeedLoading()) return;
+
+            LinearLayoutManager layoutManager =
+                    (LinearLayoutManager) binding.servicesRecyclerView.getLayoutManager();
+            if (layoutManager == null) return;
+
+            int lastVisible = layoutManager.findLastVisibleItemPosition();
+            if (lastVisible >= serviceAdapter.getItemCount() - FEED_PREFETCH_DISTANCE) {
+                homeController.loadNextFeedPage();
+            }
         }
 
         // ============================================================
@@ -118,6 +169,9 @@
                     if (searchRunnable != null)
                         searchHandler.removeCallbacks(searchRunnable);
 
+                    // The previous query is stale now; stop it instead of rendering it
+                    homeController.cancelSearch();
+
                     searchRunnable = () -> performSearch(s.toString());
                     searchHandler.postDelayed(searchRunnable, SEARCH_DELAY_MS);
                 }
@@ -156,7 +210,7 @@
                             currentSearchQuery = "";
                             binding.searchEditText.setText("");
                             showLoading();
-                            homeController.loadAllProvidersWithServices();
+                            loadHomeFeed();
                         } else {
                             applyFilters();
                         }
@@ -210,10 +264,12 @@
 
         // ============================================================
         private void performSearch(String query) {
+            startedLoading();
             currentSearchQuery = query.trim();
             if (currentSearchQuery.isEmpty()) {
-                homeController.loadAllProvidersWithServices();
+                loadHomeFeed();
             } else {
+                feedMode = false;
                 showLoading();
                 homeController.searchProvidersAndServices(currentSearchQuery);
             }
@@ -221,22 +277,42 @@
 
         // ============================================================
         private void applyFilters() {
+            startedLoading();
             showLoading();
 
             if (currentCategoryFilter.isEmpty()) {
-                if (currentSearchQuery.isEmpty())
-                    homeController.loadAllProvidersWithServices();
-                else
+                if (currentSearchQuery.isEmpty()) {
+                    loadHomeFeed();
+                } else {
+                    feedMode = false;
                     homeController.searchProvidersAndServices(currentSearchQuery);
+                }
             } else {
                 // IMPORTANT: always use ENGLISH KEY
+                feedMode = false;
                 homeController.filterByCategory(currentCategoryFilter);
             }
         }
 
         // ============================================================
-        private void applySorting(Map<Provider, List<ProviderService>> data) {
+        // Unfiltered list: the feed is paged newest-first, so paging only works for the
+        // timestamp orders. Price/rating sorts need the whole set and load it in one go.
+        // ============================================================
+        private void loadHomeFeed() {
+            startedLoading();
+            if (isFeedSort(currentSortOption)) {
+                feedMode = true;
+                currentResults = null;
+                sorter.cancel();
+                homeController.loadFirstFeedPage();
+            } else {
+                feedMode = false;
+                homeController.loadAllProvidersWithServices();
+            }
+        }
 
+        // ============================================================
+        private List<ServiceCardAdapter.ServiceItem> toServiceItems(Map<Provider, List<ProviderService>> data) {
             List<ServiceCardAdapter.ServiceItem> items = new ArrayList<>();
 
             for (Map.Entry<Provider, List<ProviderService>> entry : data.entrySet()) {
@@ -244,140 +320,48 @@
                     items.add(new ServiceCardAdapter.ServiceItem(entry.getKey(), service));
                 }
             }
+            return items;
+        }
 
-            // Apply current sort option
-            if (currentSortOption == SortOption.RATING) {
-                // Special handling for rating sort - needs to fetch ratings from ReviewDatabase
-                sortItemsByRating(items);
-            } else {
-                sortItems(items);
-                serviceAdapter.setServiceItems(items);
-                updateResultCount(items.size());
-            }
+        // ============================================================
+        private void applySorting(Map<Provider, List<ProviderService>> data) {
+            currentResults = toServiceItems(data);
+            sortAndShow();
         }
 
         // ============================================================
-        // SORTING LOGIC
+        // SORTING (background, see ServiceSorter)
         // ============================================================
-        private void sortItems(List<ServiceCardAdapter.ServiceItem> items) {
-            switch (currentSortOption) {
-                case MOST_RECENT:
-                    // Sort by timestamp descending (newest first)
-                    items.sort((a, b) -> Long.compare(b.service.getTimestamp(), a.service.getTimestamp()));
-                    break;
-
-                case PRICE_LOW_TO_HIGH:
-                    items.sort((a, b) -> {
-                        double priceA = extractPrice(a.service.getPricing());
-                        double priceB = extractPrice(b.service.getPricing());
-                        return Double.compare(priceA, priceB);
-                    });
-                    break;
-
-                case PRICE_HIGH_TO_LOW:
-                    items.sort((a, b) -> {
-                        double priceA = extractPrice(a.service.getPricing());
-                        double priceB = extractPrice(b.service.getPricing());
-                        return Double.compare(priceB, priceA);
-                    });
-                    break;
-
-                case RATING:
-                    // Sort by provider rating (if available)
-                    items.sort((a, b) -> Double.compare(b.service.getRating(), a.service.getRating()));
-                    break;
-
-                case POPULAR:
-                    // Sort by service popularity (timestamp as proxy for now)
-                    items.sort((a, b) -> Long.compare(b.service.getTimestamp(), a.service.getTimestamp()));
-                    break;
-            }
+        private void sortAndShow() {
+            if (currentResults == null) return;
+            sorter.sort(currentResults, currentSortOption, sorted -> {
+                serviceAdapter.setServiceItems(sorted);
+                updateResultCount(sorted.size());
+            });
         }
 
-        // Extract numeric price from pricing string (e.g., "$50/hour" -> 50.0)
-        private double extractPrice(String pricing) {
-            if (pricing == null || pricing.isEmpty()) {
-                return Double.MAX_VALUE; // Put items without price at the end
-            }
-
-            try {
-                // Remove currency symbols and extract first number
-                String numberStr = pricing.replaceAll("[^0-9.]", "");
-                if (!numberStr.isEmpty()) {
-                    return Double.parseDouble(numberStr);
+        // Sorted by rating, the order depends on ratings that may only now have arrived
+        @Override
+        public void onRatingsResolved(Set<String> providerIds) {
+            if (feedMode || currentSortOption != SortOption.RATING || currentResults == null) return;
+            for (ServiceCardAdapter.ServiceItem item : currentResults) {
+                if (providerIds.contains(item.provider.getId())) {
+                    sortAndShow();
+                    return;
                 }
-            } catch (NumberFormatException e) {
-                Log.e("SORT", "Failed to parse price: " + pricing);
             }
-
-            return Double.MAX_VALUE;
         }
 
-        // Sort items by rating - requires fetching ratings from ReviewDatabase
-        private void sortItemsByRating(List<ServiceCardAdapter.ServiceItem> items) {
-            ReviewDatabase reviewDb = new ReviewDatabase();
-
-            // Create a map to store provider ratings
-            Map<String, Float> providerRatings = new HashMap<>();
-            int[] pendingCallbacks = {items.size()};
-
-            // Fetch ratings for all providers
-            for (ServiceCardAdapter.ServiceItem item : items) {
-                String providerId = item.provider.getId();
-
-                // Skip if already fetched
-                if (providerRatings.containsKey(providerId)) {
-                    pendingCallbacks[0]--;
-                    continue;
-                }
-
-                reviewDb.getAverageRating(providerId, new ReviewDatabase.OnRatingCalculatedListener() {
-                    @Override
-                    public void onRatingCalculated(float averageRating, int totalReviews) {
-                        providerRatings.put(providerId, averageRating);
-                        pendingCallbacks[0]--;
-
-                        // When all ratings are fetched, sort and display
-                        if (pendingCallbacks[0] == 0) {
-                            items.sort((a, b) -> {
-                                float ratingA = providerRatings.getOrDefault(a.provider.getId(), 0f);
-                                float ratingB = providerRatings.getOrDefault(b.provider.getId(), 0f);
-                                return Float.compare(ratingB, ratingA); // Descending order
-                            });
-
-                            runOnUiThread(() -> {
-                                serviceAdapter.setServiceItems(items);
-                                updateResultCount(items.size());
-                            });
-                        }
-                    }
-
-                    @Override
-                    public void onError(String error) {
-                        providerRatings.put(providerId, 0f); // Default to 0 on error
-                        pendingCallbacks[0]--;
-
-                        if (pendingCallbacks[0] == 0) {
-                            items.sort((a, b) -> {
-                                float ratingA = providerRatings.getOrDefault(a.provider.getId(), 0f);
-                                float ratingB = providerRatings.getOrDefault(b.provider.getId(), 0f);
-                                return Float.compare(ratingB, ratingA);
-                            });
-
-                            runOnUiThread(() -> {
-                                serviceAdapter.setServiceItems(items);
-                                updateResultCount(items.size());
-                            });
-                        }
-                    }
-                });
-            }
+        // The shown result set can simply be re-sorted, unless the unfiltered list has to
+        // switch between the paged feed (timestamp orders) and the full set
+        private boolean canResortInPlace() {
+            if (feedMode || currentResults == null) return false;
+            boolean unfiltered = currentCategoryFilter.isEmpty() && currentSearchQuery.isEmpty();
+            return !(unfiltered && isFeedSort(currentSortOption));
+        }
 
-            // Handle case where all providers already cached
-            if (pendingCallbacks[0] == 0) {
-                serviceAdapter.setServiceItems(items);
-                updateResultCount(items.size());
-            }
+        private static boolean isFeedSort(SortOption option) {
+            return option == SortOption.MOST_RECENT || option == SortOption.POPULAR;
         }
 
         // ============================================================
@@ -410,8 +394,122 @@
         }
 
         // ============================================================
+        // REFRESH POLICY (see RefreshPolicy)
+        // ============================================================
+        // Any load that replaces the list counts as fresh data
+        private void startedLoading() {
+            refreshPolicy.markRefreshed();
+            revalidating = false;
+        }
+
+        // Re-runs what is on screen without the loading state; results replace the list as
+        // a diff (unchanged cards stay bound, the scroll position is kept)
+        private void revalidate() {
+            refreshPolicy.markRefreshed();
+            revalidating = true;
+
+            if (feedMode) {
+                homeController.refreshFeedHead();
+            } else if (!currentCategoryFilter.isEmpty()) {
+                homeController.filterByCategory(currentCategoryFilter);
+            } else if (!currentSearchQuery.isEmpty()) {
+                homeController.searchProvidersAndServices(currentSearchQuery);
+            } else {
+                homeController.loadAllProvidersWithServices();
+            }
+        }
+
+        // Fresh newest page on top, the older pages already loaded below it
+        @Override
+        public void onFeedHeadRefreshed(Map<Provider, List<ProviderService>> page, boolean hasMore) {
+            revalidating = false;
+            if (!feedMode) return;
+
+            sorter.sortPage(toServiceItems(page), currentSortOption, head -> {
+                if (!feedMode) return;
+                if (head.isEmpty()) {
+                    showEmptyState(getString(R.string.empty_state_no_services));
+                    return;
+                }
+
+                List<ServiceCardAdapter.ServiceItem> merged = new ArrayList<>(head);
+                if (hasMore) {
+                    Set<String> headKeys = new HashSet<>();
+                    for (ServiceCardAdapter.ServiceItem item : head) headKeys.add(item.key());
+                    long oldestInHead = head.get(head.size() - 1).service.getTimestamp();
+
+                    for (ServiceCardAdapter.ServiceItem item : serviceAdapter.getServiceItems()) {
+                        if (!headKeys.contains(item.key()) && item.service.getTimestamp() < oldestInHead) {
+                            merged.add(item);
+                        }
+                    }
+                }
+                showContent();
+                serviceAdapter.setServiceItems(merged);
+                updateResultCount(merged.size());
+            });
+        }
+
+        // ============================================================
+        // LIVE UPDATES (see HomeController.startLiveUpdates())
+        // ============================================================
+        // Changes are merged on the sort thread; only the cards they touch are replaced and
+        // the adapter diff turns that into item-level inserts, changes and removals. A merge
+        // that finds the list replaced by the time it arrives is redone on the new list.
+        @Override
+        public void onServicesChanged(List<ProviderServiceDatabase.ServiceChange> changes, boolean fullSnapshot, long since) {
+            if (feedMode) {
+                final List<ServiceCardAdapter.ServiceItem> shown = serviceAdapter.getServiceItems();
+                if (shown.isEmpty() && homeController.feedHasMore()) return;   // first page still loading
+
+                // The listener covers the first page and anything newer (saving bumps the
+                // timestamp), so every change belongs at the top of the feed
+                sorter.mergeChanges(shown, changes, fullSnapshot, since, (service, isShown) -> true,
+                        currentSortOption, merged -> {
+                            if (!feedMode) return;
+                            if (serviceAdapter.getServiceItems() != shown) {
+                                onServicesChanged(changes, fullSnapshot, since);
+                                return;
+                            }
+                            if (merged == null) return;
+                            if (merged.isEmpty()) {
+                                showEmptyState(getString(R.string.empty_state_no_services));
+                                return;
+                            }
+                            showContent();
+                            serviceAdapter.setServiceItems(merged);
+                            updateResultCount(merged.size());
+                        });
+            } else if (currentResults != null) {
+                final List<ServiceCardAdapter.ServiceItem> shown = currentResults;
+                final String category = currentCategoryFilter;
+                final boolean searching = !currentSearchQuery.isEmpty();
+                ServiceSorter.Admission admission = (service, isShown) -> {
+                    if (!category.isEmpty()) return service.getCategoryKeys().contains(category);
+                    return isShown || !searching;   // search results are only updated, never extended
+                };
+
+                sorter.mergeChanges(shown, changes, fullSnapshot, since, admission, null, merged -> {
+                    if (feedMode) return;
+                    if (currentResults != shown) {
+                        if (currentResults != null) onServicesChanged(changes, fullSnapshot, since);
+                        return;
+                    }
+                    if (merged == null) return;
+                    currentResults = merged;
+                    if (merged.isEmpty()) {
+                        showEmptyState(getString(R.string.empty_state_no_services));
+                    } else {
+                        showContent();
+                        sortAndShow();
+                    }
+                });
+            }
+        }
+
         @Override
         public void onProvidersWithServicesLoaded(Map<Provider, List<ProviderService>> map) {
+            revalidating = false;
             if (map.isEmpty()) showEmptyState(getString(R.string.empty_state_no_services));
             else {
                 showContent();
@@ -419,8 +517,36 @@
             }
         }
 
+        @Override
+        public void onFeedPageLoaded(Map<Provider, List<ProviderService>> page, boolean firstPage, boolean hasMore) {
+            if (!feedMode) return;
+
+            // Pages arrive newest-first; sorting within the page keeps the overall order
+            List<ServiceCardAdapter.ServiceItem> items = toServiceItems(page);
+            if (firstPage && items.isEmpty()) {
+                showEmptyState(getString(R.string.empty_state_no_services));
+                return;
+            }
+
+            sorter.sortPage(items, currentSortOption, sorted -> {
+                if (!feedMode) return;   // left the feed while the page was sorting
+
+                if (firstPage) {
+                    showContent();
+                    serviceAdapter.setServiceItems(sorted);
+                } else {
+                    serviceAdapter.appendServiceItems(sorted);
+                }
+                updateResultCount(serviceAdapter.getServiceItems().size());
+
+                // A short page may not fill the screen, so no scroll event would ever ask for more
+                binding.servicesRecyclerView.post(this::maybeLoadNextFeedPage);
+            });
+        }
+
         @Override
         public void onSearchResultsLoaded(Map<Provider, List<ProviderService>> map, String query) {
+            revalidating = false;
             if (map.isEmpty()) showEmptyState(getString(R.string.empty_state_no_results, query));
             else {
                 showContent();
@@ -430,14 +556,23 @@
 
         @Override
         public void onSearchResultsEmpty(String query) {
+            revalidating = false;
             showEmptyState(getString(R.string.empty_state_no_results, query));
         }
 
         @Override public void onProviderDetailsLoaded(Provider provider, List<ProviderService> services) {}
         @Override public void onNoDataAvailable() {
+            revalidating = false;
+            if (!feedMode) currentResults = new ArrayList<>();   // live additions can still fill it
             showEmptyState(getString(R.string.empty_state_no_data));
         }
         @Override public void onError(String errorMessage) {
+            if (revalidating) {
+                // Quiet refresh failed: the list on screen is still the best there is
+                revalidating = false;
+                Log.w("HOME", "Background refresh failed: " + errorMessage);
+                return;
+            }
             showEmptyState("Error: " + errorMessage);
         }
 
@@ -462,7 +597,7 @@
             i.putExtra("serviceArea", item.service.getServiceArea());
             i.putExtra("serviceAvailability", item.service.getAvailability());
             i.putExtra("serviceContactPreference", item.service.getContactPreference());
-            i.putExtra("serviceImageUrl", item.service.getImageUrl());
+            i.putExtra("serviceImageUrl", item.service.getDetailImageUrl());
 
             startActivity(i);
         }
@@ -471,16 +606,30 @@
         @Override
         protected void onDestroy() {
             super.onDestroy();
+            ProviderRatingCache.get().removeListener(this);
+            sorter.cancel();
             if (searchHandler != null && searchRunnable != null)
                 searchHandler.removeCallbacks(searchRunnable);
         }
 
+        @Override
+        protected void onStart() {
+            super.onStart();
+            homeController.startLiveUpdates();
+        }
+
+        @Override
+        protected void onStop() {
+            super.onStop();
+            homeController.stopLiveUpdates();
+        }
+
         @Override
         protected void onResume() {
             super.onResume();
             updateCustomerButtonState();
-            showLoading();
-            homeController.loadAllProvidersWithServices();
+            // Keep the current list; refresh it in the background only when it is due
+            if (refreshPolicy.shouldRefresh()) revalidate();
         }
 
         // ============================================================
@@ -519,7 +668,11 @@
                             case 4: currentSortOption = SortOption.POPULAR; break;
                         }
                         dialog.dismiss();
-                        applyFilters(); // Reapply current filters with new sort
+                        if (canResortInPlace()) {
+                            sortAndShow();   // same results, cached order per sort option
+                        } else {
+                            applyFilters(); // Reapply current filters with new sort
+                        }
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
@@ -598,9 +751,4 @@
             finish();
             startActivity(intent);
         }
-
-        // ============================================================
-        private enum SortOption {
-            RATING, PRICE_LOW_TO_HIGH, PRICE_HIGH_TO_LOW, MOST_RECENT, POPULAR
-        }
     }
@@ -20,6 +20,7 @@ import com.google.android.material.button.MaterialButton;
 
 import java.util.*;
 import edu.sjsu.android.servicesfinder.R;
+import edu.sjsu.android.servicesfinder.model.ServiceCategory;
 
 /**
  * ========================================================================
@@ -106,6 +107,11 @@ public class MultiSelectDropdown {
 
         // Restore from saved string: "Cat: Svc1, Svc2 | ..."
         public void setSelectedItemsFromCategory(String categoryString) {
+            setSelectedItems(ServiceCategory.parse(categoryString).toSelectionMap());
+        }
+
+        // Restore from an already-parsed catalogue -> services map
+        public void setSelectedItems(Map<String, Set<String>> selection) {
             // Clear all existing selections
             selectedItems.clear();
 
@@ -116,33 +122,12 @@ public class MultiSelectDropdown {
                 }
             }
 
-            // Handle empty/null input
-            if (categoryString == null || categoryString.trim().isEmpty()) {
-                updateText();
-                return;
-            }
-
-            // Parse the category string
-            // Format: "Catalogue1: Service1, Service2 | Catalogue2: Service3"
-            String[] catalogueParts = categoryString.split("\\|");
-
-            for (String part : catalogueParts) {
-                part = part.trim();
-
-                // Each part should be "Catalogue: Service1, Service2"
-                if (part.contains(":")) {
-                    String[] split = part.split(":", 2);
-                    String catalogue = split[0].trim();
-                    String servicesStr = split[1].trim();
-
+            if (selection != null) {
+                for (Map.Entry<String, Set<String>> entry : selection.entrySet()) {
                     // Only process if this catalogue exists in our data
-                    if (selectedItems.containsKey(catalogue)) {
-                        // Split services by comma
-                        String[] services = servicesStr.split(",");
-                        for (String service : services) {
-                            // Add each service to the selection set
-                            selectedItems.get(catalogue).add(service.trim());
-                        }
+                    Set<String> selected = selectedItems.get(entry.getKey());
+                    if (selected != null) {
+                        selected.addAll(entry.getValue());
                     }
                 }
             }
@@ -41,6 +41,7 @@ import edu.sjsu.android.servicesfinder.controller.SessionManager;
 import edu.sjsu.android.servicesfinder.controller.CatalogueController;
 import edu.sjsu.android.servicesfinder.controller.ProviderServiceController;
 import edu.sjsu.android.servicesfinder.controller.UIHelper;
+import edu.sjsu.android.servicesfinder.database.ImageUploadQueue;
 import edu.sjsu.android.servicesfinder.database.ProviderServiceDatabase;
 import edu.sjsu.android.servicesfinder.database.StorageHelper;
 import edu.sjsu.android.servicesfinder.databinding.ActivityProviderDashboardBinding;
@@ -84,6 +85,7 @@ public class ProviderDashboardActivity extends AppCompatActivity
     private MultiSelectDropdown catalogueDropdown;
     private boolean cataloguesLoaded = false;
     private String editingServiceId = null;
+    private StorageHelper.ImageUrls draftImageUrls = null;   // variants of the loaded draft's image
 
     private ProviderServiceController providerServiceController;
     private ProviderController controller;
@@ -123,6 +125,9 @@ public class ProviderDashboardActivity extends AppCompatActivity
         // Initialize Firebase
         firestore = FirebaseFirestore.getInstance();
         storageRef = FirebaseStorage.getInstance().getReference();
+        ImageUploadQueue uploadQueue = ImageUploadQueue.get(this);
+        uploadQueue.resume();
+        uploadQueue.sweepOrphans(SessionManager.getProviderId(this));   // daily, skipped while uploads pend
 
         // Initialize controller
         catalogueController = new CatalogueController();
@@ -262,14 +267,16 @@ public class ProviderDashboardActivity extends AppCompatActivity
             String uriString = selectedImageUri.toString();
 
             if (uriString.startsWith("http://") || uriString.startsWith("https://")) {
+                // Already uploaded (loaded draft): keep its variants when it is the same image
+                StorageHelper.ImageUrls existing = uriString.equals(draftImageUrls != null ? draftImageUrls.originalUrl : null)
+                        ? draftImageUrls : new StorageHelper.ImageUrls(uriString, null, null);
                 saveServiceToFirestore(title, description, pricing, categoryToSave, //**here***********
-                        area, availability, contactPreference, providerId, uriString);
+                        area, availability, contactPreference, providerId, existing, null);
             } else {
-                String finalProviderId = providerId;
-                StorageHelper.uploadImageToFirebase(this, selectedImageUri, providerId, imageUrl -> {
-                    saveServiceToFirestore(title, description, pricing, categoryToSave,
-                            area, availability, contactPreference, finalProviderId, imageUrl);
-                });
+                // New local image: save now (an edited service keeps its current image meanwhile),
+                // the upload queue patches the image in once it is uploaded
+                saveServiceToFirestore(title, description, pricing, categoryToSave,
+                        area, availability, contactPreference, providerId, draftImageUrls, selectedImageUri);
             }
         } else {
             String finalProviderId1 = providerId;
@@ -278,7 +285,7 @@ public class ProviderDashboardActivity extends AppCompatActivity
                     .setMessage(getString(R.string.dialog_no_image_message))
                     .setPositiveButton(getString(R.string.action_continue_without_image), (dialog, which) -> {
                         saveServiceToFirestore(title, description, pricing, categoryToSave,
-                                area, availability, contactPreference, finalProviderId1, null);
+                                area, availability, contactPreference, finalProviderId1, null, null);
                     })
                     .setNegativeButton(getString(R.string.action_add_image), (dialog, which) -> showImagePickerDialog())
                     .show();
@@ -309,7 +316,8 @@ public class ProviderDashboardActivity extends AppCompatActivity
     // =========================================================
     private void saveServiceToFirestore(String title, String description, String pricing,
                                         String category, String area, String availability,
-                                        String contactPreference, String providerId, String imageUrl) {
+                                        String contactPreference, String providerId,
+                                        StorageHelper.ImageUrls imageUrls, Uri pendingImageUri) {
         if (providerId == null || providerId.isEmpty()) {
             String context = getString(R.string.error_context_login_session);
             String message = getString(R.string.error_no_provider_id_1, context);
@@ -328,7 +336,11 @@ public class ProviderDashboardActivity extends AppCompatActivity
         service.setServiceArea(area);
         service.setAvailability(availability);
         service.setContactPreference(contactPreference);
-        service.setImageUrl(imageUrl != null ? imageUrl : "");
+        service.setImageUrl(imageUrls != null ? imageUrls.originalUrl : "");
+        if (imageUrls != null) {
+            service.setMediumImageUrl(imageUrls.mediumUrl);
+            service.setThumbnailUrl(imageUrls.thumbnailUrl);
+        }
         service.setStatus("Active");
         service.setRating(0.0);
         service.setTimestamp(System.currentTimeMillis());
@@ -343,10 +355,34 @@ public class ProviderDashboardActivity extends AppCompatActivity
         controller.saveOrUpdateService(this,providerId, service, new ProviderServiceDatabase.OnServiceSaveListener() {
             @Override
             public void onSuccess(String serviceId) {
-                savingDialog.dismiss();
-                ProToast.success(ProviderDashboardActivity.this, getString(R.string.success_service_saved));
-                clearForm();
-                finish();
+                if (pendingImageUri == null) {
+                    savingDialog.dismiss();
+                    onServiceSaved();
+                    return;
+                }
+
+                // Stay open until the image is copied and queued: the picker's grant ends with us
+                ImageUploadQueue.get(ProviderDashboardActivity.this).enqueue(pendingImageUri, providerId, serviceId,
+                        new ImageUploadQueue.OnEnqueueListener() {
+                            @Override
+                            public void onEnqueued() {
+                                if (isDestroyed()) return;
+                                savingDialog.dismiss();
+                                Toast.makeText(ProviderDashboardActivity.this,
+                                        getString(R.string.info_image_uploading_background), Toast.LENGTH_SHORT).show();
+                                onServiceSaved();
+                            }
+
+                            @Override
+                            public void onEnqueueFailed() {
+                                if (isDestroyed()) return;
+                                savingDialog.dismiss();
+                                // The service itself is saved, only without the new image
+                                ProToast.error(ProviderDashboardActivity.this, getString(R.string.error_image_not_saved));
+                                clearForm();
+                                finish();
+                            }
+                        });
             }
 
             @Override
@@ -357,6 +393,12 @@ public class ProviderDashboardActivity extends AppCompatActivity
         });
     }
 
+    private void onServiceSaved() {
+        ProToast.success(this, getString(R.string.success_service_saved));
+        clearForm();
+        finish();
+    }
+
     // =========================================================
     // IMAGE PICKER
     // =========================================================
@@ -558,24 +600,16 @@ public class ProviderDashboardActivity extends AppCompatActivity
                 if (draft.getCategory() != null && !draft.getCategory().isEmpty()) {
                     String saved = draft.getCategory().trim();
 
-                    // Try to parse as clean English first (new format)
+                    // English map → current language, straight into the dropdown
                     Map<String, Set<String>> englishMap = FirestoreStringTranslator.parseEnglishCategoryString(saved);
-
-                    if (!englishMap.isEmpty()) {
-                        // It's clean English → convert to current language
-                        Map<String, Set<String>> localizedMap = FirestoreStringTranslator.getLocalizedCategoryMap(englishMap);
-                        String localizedText = FirestoreStringTranslator.get(ProviderDashboardActivity.this)
-                                .buildLocalizedCategoryString(localizedMap);
-                        catalogueDropdown.setSelectedItemsFromCategory(localizedText);
-                    } else {
-                        // Old broken format (any language) → just translate directly
-                        String localized = FirestoreStringTranslator.get(ProviderDashboardActivity.this).translateCategory(saved);
-                        catalogueDropdown.setSelectedItemsFromCategory(localized);
-                    }
+                    Map<String, Set<String>> localizedMap = FirestoreStringTranslator.getLocalizedCategoryMap(englishMap);
+                    catalogueDropdown.setSelectedItems(localizedMap);
                 }
 
 
                 if (draft.getImageUrl() != null && !draft.getImageUrl().isEmpty()) {
+                    draftImageUrls = new StorageHelper.ImageUrls(draft.getImageUrl(),
+                            draft.getMediumImageUrl(), draft.getThumbnailUrl());
                     Glide.with(ProviderDashboardActivity.this).load(draft.getImageUrl()).into(binding.imagePreview);
                     binding.imagePreview.setVisibility(View.VISIBLE);
                     selectedImageUri = Uri.parse(draft.getImageUrl());
@@ -18,14 +18,16 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import com.bumptech.glide.Glide;
 import com.google.android.material.textfield.TextInputEditText;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
 import edu.sjsu.android.servicesfinder.R;
-import edu.sjsu.android.servicesfinder.controller.CustomerController;
+import edu.sjsu.android.servicesfinder.controller.FavoritesCache;
 import edu.sjsu.android.servicesfinder.controller.FirestoreStringTranslator;
-import edu.sjsu.android.servicesfinder.controller.HomeController;
+import edu.sjsu.android.servicesfinder.controller.ProviderRatingCache;
 import edu.sjsu.android.servicesfinder.controller.ReviewAdapter;
 import edu.sjsu.android.servicesfinder.controller.SessionManager;
 import edu.sjsu.android.servicesfinder.database.CustomerDatabase;
@@ -33,6 +35,7 @@ import edu.sjsu.android.servicesfinder.database.ReviewDatabase;
 import edu.sjsu.android.servicesfinder.databinding.ActivityServiceDetailBinding;
 import edu.sjsu.android.servicesfinder.model.Customer;
 import edu.sjsu.android.servicesfinder.model.Review;
+import edu.sjsu.android.servicesfinder.model.ServiceCategory;
 import edu.sjsu.android.servicesfinder.util.ProToast;
 
 //******************************************************************************************
@@ -62,6 +65,11 @@ public class ServiceDetailActivity extends AppCompatActivity {
     private ReviewDatabase reviewDatabase;
     private String providerId;
     private ReviewAdapter reviewAdapter;
+    private ReviewDatabase.ReviewBundle reviewBundle;   // reviews + summary on screen
+    private boolean loadingReviewPage = false;
+    private ListenerRegistration newReviewsRegistration;  // real-time tail above the first page
+    // Start loading older reviews when the bottom of the screen is this close
+    private static final int REVIEW_PAGE_PREFETCH_DP = 600;
     // FAVORITES
     private boolean isFavorite = false;
 
@@ -153,10 +161,8 @@ public class ServiceDetailActivity extends AppCompatActivity {
         // this for translator
         // Category - Extract and show only the primary category with services
         if (serviceCategory != null && !serviceCategory.isEmpty()) {
-            String translatedCategory = FirestoreStringTranslator.get(this)
-                    .translateCategory(serviceCategory);
-            HomeController controller = new HomeController(this);
-            String primaryCategory = controller.extractProviderCategoryWithServices(translatedCategory);
+            String primaryCategory = FirestoreStringTranslator.get(this)
+                    .formatLocalized(ServiceCategory.parse(serviceCategory).primary());
             binding.serviceDetailCategory.setText(getString(R.string.label_category_prefix, primaryCategory));
             binding.serviceDetailCategory.setVisibility(View.VISIBLE);
         } else {
@@ -364,16 +370,29 @@ public class ServiceDetailActivity extends AppCompatActivity {
         String customerId = SessionManager.getCustomerId(this);
         if (customerId == null || providerId == null) return;
 
+        // Favorites already held in memory (profile screen or an earlier detail screen) show
+        // right away; the customer document below still refreshes them, since they may have
+        // changed elsewhere (setFavorites ignores it while this app's own writes are pending)
+        FavoritesCache favorites = FavoritesCache.get();
+        boolean cached = favorites.isLoadedFor(customerId);
+        if (cached) {
+            isFavorite = favorites.isFavorite(providerId);
+            updateFavoriteButton();
+        }
+
         CustomerDatabase customerDatabase = new CustomerDatabase(this);
         customerDatabase.getCustomerById(customerId, new CustomerDatabase.OnCustomerLoadedListener() {
             @Override
             public void onSuccess(Customer customer) {
-                isFavorite = customer.isFavorite(providerId);
+                if (isFinishing() || isDestroyed()) return;
+                favorites.setFavorites(customerId, customer.getFavoriteProviders());
+                isFavorite = favorites.isFavorite(providerId);
                 updateFavoriteButton();
             }
 
             @Override
             public void onError(String errorMessage) {
+                if (isFinishing() || isDestroyed() || cached) return;
                 // Failed to load, assume not favorite
                 isFavorite = false;
                 updateFavoriteButton();
@@ -381,6 +400,7 @@ public class ServiceDetailActivity extends AppCompatActivity {
         });
     }
 
+    // Optimistic: the heart flips now, and flips back if the write fails
     private void toggleFavorite() {
         String customerId = SessionManager.getCustomerId(this);
         Log.d("FAVORITE_DEBUG", "toggleFavorite called - customerId: " + customerId + ", providerId: " + providerId + ", isFavorite: " + isFavorite);
@@ -391,24 +411,28 @@ public class ServiceDetailActivity extends AppCompatActivity {
             return;
         }
 
-        CustomerController customerController = new CustomerController(this);
-        CustomerDatabase.OnCustomerOperationListener callback = new CustomerDatabase.OnCustomerOperationListener() {
+        FavoritesCache.get().toggle(this, customerId, providerId, new FavoritesCache.OnFavoriteToggleListener() {
             @Override
-            public void onSuccess(String message) {
-                Log.d("FAVORITE_DEBUG", "Toggle success: " + message);
-                isFavorite = !isFavorite;
+            public void onFavoriteChanged(String changedProviderId, boolean favorite) {
+                if (isFinishing() || isDestroyed()) return;
+                isFavorite = favorite;
                 updateFavoriteButton();
+            }
+
+            @Override
+            public void onFavoriteSaved(String changedProviderId, boolean favorite, String message) {
+                Log.d("FAVORITE_DEBUG", "Toggle success: " + message);
+                if (isFinishing() || isDestroyed()) return;
                 ProToast.success(ServiceDetailActivity.this, message);
             }
 
             @Override
-            public void onError(String errorMessage) {
+            public void onFavoriteFailed(String changedProviderId, String errorMessage) {
                 Log.e("FAVORITE_DEBUG", "Toggle error: " + errorMessage);
+                if (isFinishing() || isDestroyed()) return;
                 ProToast.error(ServiceDetailActivity.this, errorMessage);
             }
-        };
-
-        customerController.toggleFavoriteProvider(customerId, providerId, isFavorite, callback);
+        });
     }
 
     private void updateFavoriteButton() {
@@ -444,6 +468,10 @@ public class ServiceDetailActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (newReviewsRegistration != null) {
+            newReviewsRegistration.remove();
+            newReviewsRegistration = null;
+        }
         binding = null; // Prevent memory leaks
     }
 
@@ -546,7 +574,12 @@ public class ServiceDetailActivity extends AppCompatActivity {
             @Override
             public void onSuccess(String reviewId) {
                 ProToast.success(ServiceDetailActivity.this, getString(R.string.success_review_submitted));
-                loadProviderReviews(); // Reload to show new review
+                if (binding == null) return;
+                if (reviewBundle != null) {
+                    showReviewBundle(reviewBundle.plus(review));   // merged locally, no reload
+                } else {
+                    loadProviderReviews();
+                }
             }
 
             @Override
@@ -561,20 +594,69 @@ public class ServiceDetailActivity extends AppCompatActivity {
             return;
         }
 
-        reviewDatabase.getReviewsForProvider(providerId, new ReviewDatabase.OnReviewsLoadedListener() {
+        // Newest page of reviews + the overall average, read together
+        reviewDatabase.getReviewBundle(providerId, new ReviewDatabase.OnReviewBundleLoadedListener() {
             @Override
-            public void onReviewsLoaded(List<Review> reviews) {
-                displayReviews(reviews);
-                updateAverageRating(providerId);  //  Pass providerId
+            public void onReviewBundleLoaded(ReviewDatabase.ReviewBundle bundle) {
+                if (binding == null) return;
+                showReviewBundle(bundle);
+                listenForNewReviews(bundle.newestTimestamp());
             }
 
             @Override
             public void onError(String error) {
                 Log.e("ServiceDetail", "Error loading reviews: " + error);
+                if (binding != null) binding.ratingSection.setVisibility(View.GONE);
+            }
+        });
+    }
+
+    // Reviews posted while the screen is open slide in on top
+    private void listenForNewReviews(long newerThan) {
+        if (newReviewsRegistration != null) newReviewsRegistration.remove();
+        newReviewsRegistration = reviewDatabase.listenForNewReviews(providerId, newerThan, added -> {
+            if (binding == null || reviewBundle == null) return;
+            ReviewDatabase.ReviewBundle bundle = reviewBundle;
+            for (Review review : added) {
+                bundle = bundle.plus(review);
+            }
+            showReviewBundle(bundle);
+        });
+    }
+
+    // Older reviews, one page at a time, as the screen scrolls toward them
+    private void maybeLoadMoreReviews() {
+        if (binding == null || reviewBundle == null || !reviewBundle.hasMore || loadingReviewPage) return;
+
+        View content = binding.detailScrollView.getChildAt(0);
+        int remaining = content.getBottom() - (binding.detailScrollView.getScrollY() + binding.detailScrollView.getHeight());
+        if (remaining > REVIEW_PAGE_PREFETCH_DP * getResources().getDisplayMetrics().density) return;
+
+        loadingReviewPage = true;
+        reviewDatabase.getNextReviewPage(providerId, reviewBundle, new ReviewDatabase.OnReviewPageLoadedListener() {
+            @Override
+            public void onReviewPageLoaded(List<Review> page, DocumentSnapshot cursor, boolean hasMore) {
+                loadingReviewPage = false;
+                if (binding == null) return;
+                showReviewBundle(reviewBundle.withPage(page, cursor, hasMore));
+            }
+
+            @Override
+            public void onError(String error) {
+                loadingReviewPage = false;
+                Log.e("ServiceDetail", "Error loading more reviews: " + error);
             }
         });
     }
 
+    private void showReviewBundle(ReviewDatabase.ReviewBundle bundle) {
+        reviewBundle = bundle;
+        displayReviews(bundle.reviews);
+        showRatingSummary(bundle.summary);
+        // A short list may not reach the bottom, so no scroll would ever ask for more
+        binding.detailScrollView.post(this::maybeLoadMoreReviews);
+    }
+
     private void displayReviews(List<Review> reviews) {
         if (reviews.isEmpty()) {
             binding.reviewsRecyclerView.setVisibility(View.GONE);
@@ -592,6 +674,8 @@ public class ServiceDetailActivity extends AppCompatActivity {
         reviewAdapter = new ReviewAdapter(this);
         binding.reviewsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         binding.reviewsRecyclerView.setAdapter(reviewAdapter);
+        // The reviews scroll with the whole screen (the list itself does not scroll)
+        binding.detailScrollView.getViewTreeObserver().addOnScrollChangedListener(this::maybeLoadMoreReviews);
         // Setup Add Review button
         binding.addReviewButton.setOnClickListener(v -> showAddReviewDialog());
 
@@ -599,27 +683,20 @@ public class ServiceDetailActivity extends AppCompatActivity {
         loadProviderReviews();
     }
 
-    private void updateAverageRating(String providerId) {
-        reviewDatabase.getAverageRating(providerId, new ReviewDatabase.OnRatingCalculatedListener() {
-            @Override
-            public void onRatingCalculated(float averageRating, int totalReviews) {
-                if (totalReviews == 0) {
-                    binding.ratingSection.setVisibility(View.GONE);
-                } else {
-                    binding.ratingSection.setVisibility(View.VISIBLE);
-                    binding.averageRatingText.setText(String.format(Locale.getDefault(),
-                            "⭐ %.1f", averageRating));
-                    binding.reviewCountText.setText(String.format(Locale.getDefault(),
-                            "(%d %s)", totalReviews,
-                            totalReviews == 1 ? "review" : "reviews"));
-                }
-            }
+    private void showRatingSummary(ReviewDatabase.RatingSummary summary) {
+        // Keep home-screen cards in step with what this screen shows
+        ProviderRatingCache.get().put(providerId, summary);
 
-            @Override
-            public void onError(String error) {
-                binding.ratingSection.setVisibility(View.GONE);
-            }
-        });
+        if (summary.totalReviews == 0) {
+            binding.ratingSection.setVisibility(View.GONE);
+        } else {
+            binding.ratingSection.setVisibility(View.VISIBLE);
+            binding.averageRatingText.setText(String.format(Locale.getDefault(),
+                    "⭐ %.1f", summary.averageRating));
+            binding.reviewCountText.setText(String.format(Locale.getDefault(),
+                    "(%d %s)", summary.totalReviews,
+                    summary.totalReviews == 1 ? "review" : "reviews"));
+        }
     }
 
 }
\ No newline at end of file